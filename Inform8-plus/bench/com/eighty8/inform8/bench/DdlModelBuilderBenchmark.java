@@ -0,0 +1,57 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.bench;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.eighty8.inform8.db.ddl.DdlModelBuilder;
+import com.eighty8.inform8.db.model.DatabaseModel;
+
+/**
+ * Reading the model from a mysqldump of the synthetic schema.
+ *
+ * @author ryanhenderson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DdlModelBuilderBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  public int tables;
+
+  private String ddl;
+
+
+  @Setup
+  public void setup() throws Exception {
+    ddl = SyntheticSchema.ddl(tables);
+    // the bit literal default reads as INFORMATION_SCHEMA reports it
+    String active = extract().getTables().get(0).getColumn("Active").getDefaultValue();
+    if (!"b'0'".equals(active)) {
+      throw new IllegalStateException("Active default read as " + active);
+    }
+  }
+
+
+  @Benchmark
+  public DatabaseModel extract() throws Exception {
+    return new DdlModelBuilder(null).extractModel(new StringReader(ddl));
+  }
+
+}
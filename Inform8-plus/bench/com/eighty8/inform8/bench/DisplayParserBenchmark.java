@@ -0,0 +1,63 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.eighty8.inform8.db.table.Inform8Table;
+import com.eighty8.inform8.render.DisplayParser;
+import com.eighty8.inform8.render.RenderElement;
+import com.eighty8.inform8.render.RenderPlan;
+
+/**
+ * Parsing of display strings, plain, with members and through a foreign key, through the plan
+ * cache and compiled every time.
+ *
+ * @author ryanhenderson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DisplayParserBenchmark {
+
+  @Param({ "Plain text", "{Name}", "{Name} ({Created})", "{Name} - {Table0Id.Name} / {Description}" })
+  public String display;
+
+  private Inform8Table table;
+
+
+  @Setup
+  public void setup() {
+    // Table1 has a foreign key to Table0
+    table = SyntheticSchema.tables(2).get(1);
+  }
+
+
+  /** the plan is compiled on the first call and shared after */
+  @Benchmark
+  public List<RenderElement> parse() {
+    return new DisplayParser(table, display).parse();
+  }
+
+
+  @Benchmark
+  public RenderPlan compile() {
+    return RenderPlan.compile(table, display);
+  }
+
+}
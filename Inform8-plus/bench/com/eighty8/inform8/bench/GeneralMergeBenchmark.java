@@ -0,0 +1,68 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.eighty8.inform8.Gen;
+
+/**
+ * Merging a general template with a whole model, as Gen does, without writing the output.
+ *
+ * @author ryanhenderson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GeneralMergeBenchmark {
+
+  @Param({ "10", "100", "1000", "5000" })
+  public int tables;
+
+  @Param({ "config/authenticatedajax/calendar.php.vm", "config/authenticatedpages/help.php.vm",
+      "config/lib/Inform8/loadall-plus.php.vm", "config/lib/Inform8/rest/list.php.vm", "config/menu/fly-menu.php.vm",
+      "config/menu/goog-menu.php.vm", "config/templates/authenticated.php.vm", "config/templates/default.footer.php.vm",
+      "config/templates/default.header.php.vm", "config/thedb.conn.php.vm", "js/extensions.js.vm", "js/lang.js.vm" })
+  public String template;
+
+  private GenerationFixture fixture;
+
+  private Gen gen;
+
+
+  @Setup
+  public void setup() throws Exception {
+    fixture = new GenerationFixture(tables);
+    gen = new Gen(fixture.config, fixture.templates);
+  }
+
+
+  @TearDown
+  public void tearDown() {
+    fixture.delete();
+  }
+
+
+  @Benchmark
+  public long merge() throws Exception {
+    NullWriter out = new NullWriter();
+    gen.merge(fixture.tables, template, fixture.extras, out);
+    return out.getCount();
+  }
+
+}
@@ -0,0 +1,178 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import com.eighty8.inform8.config.PlusGeneratorConfig;
+import com.eighty8.inform8.db.table.Inform8Table;
+import com.eighty8.inform8.lang.LanguageGenerator;
+import com.eighty8.inform8.menu.Menu;
+import com.eighty8.inform8.menu.MenuItem;
+import com.eighty8.inform8.render.RenderPlanCache;
+import com.eighty8.inform8.velocity.TemplateRegistry;
+
+/**
+ * Everything a generation run holds for a synthetic model: config, menu, language properties and
+ * templates, set up in a temporary folder.
+ *
+ * The config is the project config/gen.properties with the templates read from the project
+ * templates folder and menus declared for some of the tables, the rest being added by the menu
+ * merge. The project folder is the inform8.home system property, the working folder by default.
+ *
+ * @author ryanhenderson
+ */
+public class GenerationFixture {
+
+  public final File folder;
+
+  public final PlusGeneratorConfig config;
+
+  public final List<Inform8Table> tables;
+
+  public final Menu menu;
+
+  public final LanguageGenerator langGenerator;
+
+  public final TemplateRegistry templates;
+
+  public final HashMap<String, Object> extras = new HashMap<String, Object>();
+
+
+  /**
+   * A fixture with two languages, en and fr.
+   */
+  public GenerationFixture(int tableCount) throws Exception {
+    this(tableCount, 2);
+  }
+
+
+  /**
+   * @param languageCount
+   *          the number of languages: en, fr, then lang2, lang3...
+   */
+  public GenerationFixture(int tableCount, int languageCount) throws Exception {
+    File home = new File(System.getProperty("inform8.home", "."));
+    folder = File.createTempFile("inform8-bench", "");
+    folder.delete();
+    new File(folder, "lang").mkdirs();
+
+    for (int i = 0; i < languageCount; i++) {
+      writeLang(i == 0 ? "en" : i == 1 ? "fr" : "lang" + i, i == 0 ? "Welcome" : i == 1 ? "Bienvenue" : "Welcome " + i);
+    }
+    writeConfig(new File(home, "config/gen.properties"), new File(home, "templates"), tableCount);
+
+    config = new PlusGeneratorConfig(getConfigFile());
+    tables = SyntheticSchema.tables(tableCount);
+    menu = newMenu(config, tables);
+    langGenerator = new LanguageGenerator(tables, menu, folder.getPath());
+    templates = new TemplateRegistry(config.getAllProperties());
+
+    // as left by LangGen for the later generators
+    extras.put("siteMenu", menu);
+    extras.put("renderPlans", RenderPlanCache.getInstance());
+    extras.put("currentLanguage", "en");
+    extras.put("langProps", langGenerator.getLanguageProperties());
+    extras.put("langGenerator", langGenerator);
+  }
+
+
+  public File getConfigFile() {
+    return new File(folder, "gen.properties");
+  }
+
+
+  /**
+   * A menu built from the config and merged with the tables, as generation does.
+   */
+  public static Menu newMenu(PlusGeneratorConfig config, List<Inform8Table> tables) {
+    Menu menu = new Menu(new ArrayList<MenuItem>(config.getMenus()));
+    menu.merge(tables, config);
+    menu.order(config.getMenusInOrder());
+    return menu;
+  }
+
+
+  public void delete() {
+    delete(folder);
+  }
+
+
+  private void writeConfig(File projectConfig, File templateFolder, int tableCount) throws IOException {
+    OutputStream out = new FileOutputStream(getConfigFile());
+    try {
+      InputStream in = new FileInputStream(projectConfig);
+      try {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+          out.write(buffer, 0, read);
+        }
+      } finally {
+        in.close();
+      }
+
+      // later entries replace the project ones
+      Writer extra = new OutputStreamWriter(out, "ISO-8859-1");
+      extra.write("\n");
+      extra.write("gen.out.folder=" + path(new File(folder, "gen")) + "\n");
+      extra.write("file.resource.loader.path=" + path(templateFolder) + "\n");
+      StringBuilder order = new StringBuilder();
+      for (int group = 0; group * 10 < tableCount / 2; group++) {
+        StringBuilder items = new StringBuilder();
+        for (int i = group * 10; i < Math.min(group * 10 + 5, tableCount); i++) {
+          items.append(items.length() > 0 ? "," : "").append(SyntheticSchema.tableName(i));
+        }
+        extra.write("menu.Group" + group + "=" + items + "\n");
+        order.insert(0, "Group" + group + (order.length() > 0 ? "," : ""));
+      }
+      extra.write("menuorder=" + order + "\n");
+      extra.flush();
+    } finally {
+      out.close();
+    }
+  }
+
+
+  private void writeLang(String language, String welcome) throws IOException {
+    Writer out = new OutputStreamWriter(new FileOutputStream(new File(folder, "lang/" + language + ".properties")), "ISO-8859-1");
+    try {
+      out.write("welcome=" + welcome + "\n");
+      out.write(SyntheticSchema.tableName(0) + "=" + SyntheticSchema.tableName(0) + " " + language + "\n");
+    } finally {
+      out.close();
+    }
+  }
+
+
+  private static String path(File file) {
+    return file.getAbsolutePath().replace('\\', '/');
+  }
+
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+}
@@ -0,0 +1,69 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.bench;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.eighty8.inform8.GenerationContext;
+import com.eighty8.inform8.LangGen;
+
+/**
+ * Generating the language files, written to the fixture folder, for one and many languages on
+ * one and several threads.
+ *
+ * @author ryanhenderson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LangGenBenchmark {
+
+  @Param({ "100", "1000" })
+  public int tables;
+
+  @Param({ "1", "40" })
+  public int languages;
+
+  @Param({ "1", "4" })
+  public int threads;
+
+  private GenerationFixture fixture;
+
+
+  @Setup
+  public void setup() throws Exception {
+    fixture = new GenerationFixture(tables, languages);
+    // LangGen reads the lang folder next to the config
+    GenerationContext.getInstance().setConfigPath(fixture.getConfigFile().getPath());
+    GenerationContext.getInstance().setConfig(fixture.config);
+  }
+
+
+  @TearDown
+  public void tearDown() {
+    fixture.delete();
+  }
+
+
+  @Benchmark
+  public void gen() throws Exception {
+    new LangGen(fixture.config, fixture.templates).gen(fixture.tables, new HashMap<String, Object>(fixture.extras), fixture.menu, threads);
+  }
+
+}
@@ -0,0 +1,71 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.bench;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.eighty8.inform8.lang.LanguageGenerator;
+import com.eighty8.inform8.lang.LanguageProperties;
+
+/**
+ * Building the language properties for every table and menu of a model, and reading a language
+ * in key order.
+ *
+ * @author ryanhenderson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LanguageGeneratorBenchmark {
+
+  @Param({ "10", "100", "1000", "5000" })
+  public int tables;
+
+  private GenerationFixture fixture;
+
+
+  @Setup
+  public void setup() throws Exception {
+    fixture = new GenerationFixture(tables);
+  }
+
+
+  @TearDown
+  public void tearDown() {
+    fixture.delete();
+  }
+
+
+  @Benchmark
+  public Map<String, LanguageProperties> construct() {
+    return new LanguageGenerator(fixture.tables, fixture.menu, fixture.folder.getPath()).getLanguageProperties();
+  }
+
+
+  /** as the langs template does for each language */
+  @Benchmark
+  public int sortedKeys() {
+    int length = 0;
+    for (String key : fixture.langGenerator.getSortedKeys("fr")) {
+      length += fixture.langGenerator.getLanguageProperties().get("fr").get(key).length();
+    }
+    return length;
+  }
+
+}
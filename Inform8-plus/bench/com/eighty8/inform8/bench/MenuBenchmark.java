@@ -0,0 +1,57 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.eighty8.inform8.menu.Menu;
+
+/**
+ * Merging the tables into the configured menus and ordering them.
+ *
+ * @author ryanhenderson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MenuBenchmark {
+
+  @Param({ "10", "100", "1000", "5000" })
+  public int tables;
+
+  private GenerationFixture fixture;
+
+
+  @Setup
+  public void setup() throws Exception {
+    fixture = new GenerationFixture(tables);
+  }
+
+
+  @TearDown
+  public void tearDown() {
+    fixture.delete();
+  }
+
+
+  @Benchmark
+  public Menu mergeAndOrder() {
+    return GenerationFixture.newMenu(fixture.config, fixture.tables);
+  }
+
+}
@@ -0,0 +1,48 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.bench;
+
+import java.io.Writer;
+
+/**
+ * Counts and discards merged output, so merges can be measured without IO.
+ *
+ * @author ryanhenderson
+ */
+public class NullWriter extends Writer {
+
+  private long count;
+
+
+  @Override
+  public void write(char[] cbuf, int off, int len) {
+    count += len;
+  }
+
+
+  @Override
+  public void write(String str, int off, int len) {
+    count += len;
+  }
+
+
+  @Override
+  public void flush() {
+  }
+
+
+  @Override
+  public void close() {
+  }
+
+
+  public long getCount() {
+    return count;
+  }
+
+}
@@ -0,0 +1,97 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.eighty8.inform8.db.mysql.MysqlTypes;
+import com.eighty8.inform8.db.table.ChildForeignKey;
+import com.eighty8.inform8.db.table.Inform8Column;
+import com.eighty8.inform8.db.table.Inform8Table;
+
+/**
+ * Builds a model of any size in memory, so generation can be measured without a database.
+ *
+ * Every table has an id, a few typical columns and, after the first, a foreign key to the table
+ * at half its index. The keys form a tree, so each table is the master of up to two others.
+ *
+ * @author ryanhenderson
+ */
+public class SyntheticSchema {
+
+  /**
+   * @param count
+   *          the number of tables
+   * @return the tables, Table0 to Table[count - 1]
+   */
+  public static List<Inform8Table> tables(int count) {
+    List<Inform8Table> tables = new ArrayList<Inform8Table>(count);
+    for (int i = 0; i < count; i++) {
+      Inform8Table table = new Inform8Table(tableName(i));
+      table.setPrimaryKey(column(table, table.getName() + "Id", "int"));
+      column(table, "Name", "varchar");
+      column(table, "Description", "text");
+      column(table, "Created", "datetime");
+      column(table, "Active", "tinyint");
+      if (i > 0) {
+        Inform8Table master = tables.get((i - 1) / 2);
+        Inform8Column fk = column(table, master.getPrimaryKey().getName(), "int");
+        fk.setChildForeignKey(new ChildForeignKey(table, fk.getName(), master, master.getPrimaryKey().getName()));
+      }
+      tables.add(table);
+    }
+    return tables;
+  }
+
+
+  /**
+   * The same tables as a mysqldump writes them, for reading the model from a schema file. Active
+   * is written as the bit(1) mysqldump gives a flag, with its bit literal default.
+   *
+   * @param count
+   *          the number of tables
+   */
+  public static String ddl(int count) {
+    StringBuilder sql = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      String name = tableName(i);
+      sql.append("DROP TABLE IF EXISTS `").append(name).append("`;\n");
+      sql.append("CREATE TABLE `").append(name).append("` (\n");
+      sql.append("  `").append(name).append("Id` int(11) NOT NULL AUTO_INCREMENT,\n");
+      sql.append("  `Name` varchar(255) NOT NULL DEFAULT '',\n");
+      sql.append("  `Description` text,\n");
+      sql.append("  `Created` datetime DEFAULT NULL,\n");
+      sql.append("  `Active` bit(1) NOT NULL DEFAULT b'0',\n");
+      if (i > 0) {
+        sql.append("  `").append(tableName((i - 1) / 2)).append("Id` int(11) DEFAULT NULL,\n");
+      }
+      sql.append("  PRIMARY KEY (`").append(name).append("Id`)");
+      if (i > 0) {
+        String master = tableName((i - 1) / 2);
+        sql.append(",\n  CONSTRAINT `fk_").append(name).append("` FOREIGN KEY (`").append(master).append("Id`) REFERENCES `")
+            .append(master).append("` (`").append(master).append("Id`)");
+      }
+      sql.append("\n) ENGINE=InnoDB DEFAULT CHARSET=utf8;\n\n");
+    }
+    return sql.toString();
+  }
+
+
+  public static String tableName(int index) {
+    return "Table" + index;
+  }
+
+
+  private static Inform8Column column(Inform8Table table, String name, String sqlType) {
+    Inform8Column col = new Inform8Column(name, MysqlTypes.getType(sqlType));
+    table.addColumn(col);
+    return col;
+  }
+
+}
@@ -0,0 +1,74 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.eighty8.inform8.ClassGen;
+import com.eighty8.inform8.db.table.Inform8Table;
+
+/**
+ * Merging a table template with every table of a model, as ClassGen does, without writing the
+ * output.
+ *
+ * @author ryanhenderson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TableMergeBenchmark {
+
+  @Param({ "10", "100", "1000", "5000" })
+  public int tables;
+
+  @Param({ "config/authenticatedajax/Crud.php.tbl.vm", "config/authenticatedajax/FkData.php.tbl.vm",
+      "config/authenticatedajax/Manager.php.tbl.vm", "config/authenticatedajax/Order.php.tbl.vm",
+      "config/authenticatedajax/Update.php.tbl.vm", "config/lib/Inform8/dao/Def.php.tbl.vm",
+      "config/lib/Inform8/fk/FkDataBuilder.php.tbl.vm", "config/lib/Inform8/http/HttpBuilder.php.tbl.vm",
+      "config/lib/Inform8/jqgrid/JqGrid.php.tbl.vm", "config/lib/Inform8/jqgrid/JqGridBuilder.php.tbl.vm",
+      "config/lib/Inform8/rest/ExcelBuilder.php.tbl.vm" })
+  public String template;
+
+  private GenerationFixture fixture;
+
+  private ClassGen classGen;
+
+
+  @Setup
+  public void setup() throws Exception {
+    fixture = new GenerationFixture(tables);
+    classGen = new ClassGen(fixture.config, fixture.templates);
+  }
+
+
+  @TearDown
+  public void tearDown() {
+    fixture.delete();
+  }
+
+
+  @Benchmark
+  public long merge() throws Exception {
+    NullWriter out = new NullWriter();
+    for (Inform8Table table : fixture.tables) {
+      classGen.merge(table, template, fixture.extras, out);
+    }
+    return out.getCount();
+  }
+
+}
@@ -0,0 +1,82 @@
+<?php 
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+?><?php 
+	/**
+	 * Load tests the connection of the generated site against a local MySQL or MariaDB, simulating
+	 * requests of a few queries each as a page would run them, three ways: a new connection a
+	 * request with the values written into the SQL as before, a persistent connection with the
+	 * same SQL, and a persistent connection with the queries prepared once a request through Db.
+	 *
+	 * A table inform8_load is created in the database given and dropped afterwards:
+	 *
+	 *   php bench/php/db-load.php [host] [user] [password] [database] [requests] [queries]
+	 *
+	 * Persistent connections need mysqli.allow_persistent, on by default.
+	 */
+	require_once dirname(__FILE__) . '/../../php-src/config/lib/Inform8/db/Db.php';
+
+	$host = isset($argv[1]) ? $argv[1] : '127.0.0.1';
+	$user = isset($argv[2]) ? $argv[2] : 'root';
+	$password = isset($argv[3]) ? $argv[3] : '';
+	$database = isset($argv[4]) ? $argv[4] : 'test';
+	$requests = isset($argv[5]) ? intval($argv[5]) : 2000;
+	$queries = isset($argv[6]) ? intval($argv[6]) : 20;
+	$rows = 1000;
+
+	Db::configure($host, $database, $user, $password, false);
+	if (Db::execute('DROP TABLE IF EXISTS inform8_load') === FALSE
+	    || Db::execute('CREATE TABLE inform8_load (Id INT NOT NULL PRIMARY KEY, Name VARCHAR(64) NOT NULL, Hits INT NOT NULL) ENGINE=InnoDB') === FALSE) {
+		die('unable to create inform8_load: ' . Db::error() . "\n");
+	}
+	foreach (array_chunk(range(1, $rows), 200) as $chunk) {
+		$params = array();
+		foreach ($chunk as $id) {
+			array_push($params, $id, 'Row ' . $id, 0);
+		}
+		Db::execute('INSERT INTO inform8_load (Id, Name, Hits) VALUES ' . implode(',', array_fill(0, count($chunk), '(?,?,?)')), $params);
+	}
+	Db::close();
+
+	echo $requests . ' requests of ' . $queries . ' selects and an update, ' . $host . "\n";
+
+	$styles = array(
+		'connect' => array(false, false),
+		'persistent' => array(true, false),
+		'prepared' => array(true, true));
+	foreach ($styles as $style => $options) {
+		mt_srand(1);
+		$start = microtime(true);
+		for ($r = 0; $r < $requests; $r++) {
+			Db::configure($host, $database, $user, $password, $options[0]);
+			for ($q = 0; $q < $queries; $q++) {
+				$id = mt_rand(1, $rows);
+				if ($options[1]) {
+					$found = Db::query('SELECT Id, Name, Hits FROM inform8_load WHERE Id = ?', array($id));
+				}else {
+					$result = Db::link()->query("SELECT Id, Name, Hits FROM inform8_load WHERE Id = '" . Db::link()->real_escape_string($id) . "'");
+					$found = $result->fetch_assoc();
+					$result->free();
+				}
+			}
+			if ($options[1]) {
+				Db::execute('UPDATE inform8_load SET Hits = Hits + 1 WHERE Id = ?', array($id));
+			}else {
+				Db::link()->query("UPDATE inform8_load SET Hits = Hits + 1 WHERE Id = '" . Db::link()->real_escape_string($id) . "'");
+			}
+			// as the request ends
+			Db::close();
+		}
+		$seconds = microtime(true) - $start;
+		printf("%-12s %10.1f requests a second\n", $style, $requests / $seconds);
+	}
+
+	Db::configure($host, $database, $user, $password, false);
+	Db::execute('DROP TABLE inform8_load');
+	Db::close();
+?>
@@ -0,0 +1,68 @@
+<?php 
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+?><?php 
+	/**
+	 * Times loading a generated language file, as every request does, from the site the generator
+	 * wrote to gen.dist.folder. Generate with lang.split.tables off and then on to compare the one
+	 * array literal with the entries split by table.
+	 *
+	 * Each iteration includes config/<language>.php and reads an entry of one table as a page
+	 * would, the run stops if the table has no entries. Run it with opcache on for the CLI to see
+	 * what a server with opcache does:
+	 *
+	 *   php -d opcache.enable_cli=1 bench/php/lang-bootstrap.php site [language] [table] [iterations]
+	 */
+	if (!isset($argv[1])) {
+		die("usage: lang-bootstrap.php site [language] [table] [iterations]\n");
+	}
+	$site = rtrim($argv[1], '/');
+	$language = isset($argv[2]) ? $argv[2] : 'en';
+	$table = isset($argv[3]) && $argv[3] != '' ? $argv[3] : NULL;
+	$iterations = isset($argv[4]) ? intval($argv[4]) : 200;
+
+	$file = $site . '/config/' . $language . '.php';
+	if (!is_file($file)) {
+		die($file . " not found, generate the site first\n");
+	}
+	include $file;
+	$split = is_object($langArray);
+
+	if ($table === NULL) {
+		// the first table of the language
+		if ($split) {
+			$segments = glob($site . '/config/lang/' . $language . '/*.php');
+			if (count($segments) > 0) {
+				$table = basename($segments[0], '.php');
+			}
+		}else {
+			foreach (array_keys($langArray) as $key) {
+				if (preg_match('/^Tbl_([^_]+)$/', $key, $match)) {
+					$table = $match[1];
+					break;
+				}
+			}
+		}
+	}
+	$page = 'Tbl_' . $table;
+	if ($table === NULL || !isset($langArray[$page])) {
+		die('no entries for table ' . $table . ' in ' . $file . ($split ? ' split by table' : '') . "\n");
+	}
+
+	$opcache = function_exists('opcache_get_status') && ini_get('opcache.enable_cli');
+	echo $file . ($split ? ' split by table' : ' as one literal') . ', table ' . $table . ', ' . $iterations
+		. ' iterations, opcache ' . ($opcache ? 'on' : 'off') . "\n";
+
+	$start = microtime(true);
+	for ($i = 0; $i < $iterations; $i++) {
+		include $file;
+		$read = $langArray[$page];
+	}
+	$micros = (microtime(true) - $start) * 1000000 / $iterations;
+	printf("%-12s %10.1f us a request\n", $split ? 'split' : 'literal', $micros);
+?>
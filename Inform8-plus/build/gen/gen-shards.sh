@@ -0,0 +1,42 @@
+#!/bin/sh
+#
+# Generates with several processes on this machine, each generating one shard of the tables
+# into the shared output folder, then checks the output of all the shards is complete.
+#
+# Usage: sh gen-shards.sh [shards] [config]
+#
+# Each process uses gen.threads worker threads. The log of each shard is written to
+# shard-logs/shard-<index>.log
+#
+# To generate on several hosts, run Inform8 with "-shard index/count" on each against a shared
+# output folder, then once on any host with "-verify count".
+
+SHARDS=${1:-4}
+CONFIG=${2:-config/gen.properties}
+CP="bin/inform8.plus.jar:bin/inform8.common.jar:bin/inform8.php.essentials.jar:lib/ve.jar:lib/mysql.jar:lib/log4j.jar:lib/"
+JAVA="java ${JAVA_OPTS} -Dlog4j.configuration=inform8-log4j.properties -cp ${CP} com.eighty8.inform8.Inform8"
+
+mkdir -p shard-logs
+
+PIDS=""
+i=0
+while [ $i -lt $SHARDS ]; do
+  $JAVA "$CONFIG" -shard $i/$SHARDS > shard-logs/shard-$i.log 2>&1 &
+  PIDS="$PIDS $!"
+  i=$((i + 1))
+done
+
+FAILED=0
+i=0
+for PID in $PIDS; do
+  if ! wait $PID; then
+    echo "Shard $i of $SHARDS failed, see shard-logs/shard-$i.log" >&2
+    FAILED=1
+  fi
+  i=$((i + 1))
+done
+if [ $FAILED -ne 0 ]; then
+  exit 1
+fi
+
+exec $JAVA "$CONFIG" -verify $SHARDS
@@ -59,6 +59,9 @@ public class PlusSqlFileParser {
 
   private List<Table> tables;
 
+  /** the tables by lower case name */
+  private Map<String, Table> tablesByName;
+
   private Map<String, Properties> langGenProperties;
 
   private final String configFolder;
@@ -110,6 +113,13 @@ public class PlusSqlFileParser {
         }
       }
 
+      tablesByName = new HashMap<String, Table>();
+      for (Table table : tables) {
+        if (!tablesByName.containsKey(table.getDbname().toLowerCase())) {
+          tablesByName.put(table.getDbname().toLowerCase(), table);
+        }
+      }
+
       List<MasterDetailForeignKey> fks = new ForeignKeyParser(tables).splitAlterTables(sql);
       System.out.println(fks);
       for (MasterDetailForeignKey foreignKey : fks) {
@@ -120,56 +130,52 @@ public class PlusSqlFileParser {
       Map<String, String> tableFkColumns = generatorConfig.getTableFkColumns();
       Set<String> fkKeySet = tableFkColumns.keySet();
       for (String fkTable : fkKeySet) {
-        findTable(fkTable, tables).setFkDataMemeber(tableFkColumns.get(fkTable));
+        findTable(fkTable).setFkDataMemeber(tableFkColumns.get(fkTable));
       }
 
       List<TableAndColumn> tableHtmlEditors = generatorConfig.getTableHtmlColumns();
       for (TableAndColumn tableandcol : tableHtmlEditors) {
-        findTable(tableandcol.getTable(), tables).setMemeberType(tableandcol.getColumn(), new HtmlEditorType());
+        findTable(tableandcol.getTable()).setMemeberType(tableandcol.getColumn(), new HtmlEditorType());
       }
 
       Map<String, String> orderCols = generatorConfig.getTableOrderDisplayColumns();
       for (String table : orderCols.keySet()) {
         System.out.println("orderCols tbl: " + table);
-        Table t = findTable(table, tables);
+        Table t = findTable(table);
         System.out.println("orderCols tbl: " + t);
         t.setOrderDisplayElements(new DisplayParser(t, orderCols.get(table)).parse());
       }
 
       List<TableAndColumn> parentChildCols = generatorConfig.getTableParentChildColumns();
       for (TableAndColumn tableandcol : parentChildCols) {
-        findTable(tableandcol.getTable(), tables).setParentChildMember(tableandcol.getColumn());
+        findTable(tableandcol.getTable()).setParentChildMember(tableandcol.getColumn());
       }
 
       List<TableAndColumnAndLabel> tableFieldLabels = generatorConfig.getTableFieldLabels();
       for (TableAndColumnAndLabel tcl : tableFieldLabels) {
         System.out.println("tcl: " + tcl);
-        findTable(tcl.getTable(), tables).getMember(tcl.getColumn()).getDisplaySettings().addLabel(tcl.getLabel());
+        findTable(tcl.getTable()).getMember(tcl.getColumn()).getDisplaySettings().addLabel(tcl.getLabel());
       }
 
       List<TableColumnProperty> tableFieldProps = generatorConfig.getTableFieldProperties();
       for (TableColumnProperty prop : tableFieldProps) {
         System.out.println("prop: " + prop);
-        findTable(prop.getTable(), tables).getMember(prop.getColumn()).getDisplaySettings().addProperty(prop.getLabel(), prop.getProperty());
+        findTable(prop.getTable()).getMember(prop.getColumn()).getDisplaySettings().addProperty(prop.getLabel(), prop.getProperty());
       }
 
       List<TableLabel> tableLabels = generatorConfig.getTableLabels();
       for (TableLabel tl : tableLabels) {
-        findTable(tl.getTable(), tables).getDisplaySettings().addLabel(tl.getLabel());
+        findTable(tl.getTable()).getDisplaySettings().addLabel(tl.getLabel());
       }
 
       List<TableProperty> tableProps = generatorConfig.getTableProperties();
       for (TableProperty tp : tableProps) {
-        findTable(tp.getTable(), tables).getDisplaySettings().addProperty(tp.getKey(), tp.getValue());
+        findTable(tp.getTable()).getDisplaySettings().addProperty(tp.getKey(), tp.getValue());
       }
 
       List<TableAndColumn> tableHiddenListColumns = generatorConfig.getHiddenListColumns();
       for (TableAndColumn tableandcol : tableHiddenListColumns) {
-        Table tempTable = findTable(tableandcol.getTable(), tables);
-        if (tempTable == null) {
-          System.out.println("Table not found: " + tableandcol);
-          System.exit(1);
-        }
+        Table tempTable = findTable(tableandcol.getTable());
         TableMember member = tempTable.getMember(tableandcol.getColumn());
         if (member == null) {
           System.out.println("Table member not found: " + tableandcol);
@@ -252,16 +258,17 @@ public class PlusSqlFileParser {
   /**
    * 
    * @param name
-   * @param tables
-   * @return
+   *          the table name, ignoring case
+   * @return the table
+   * @throws IllegalArgumentException
+   *           if there is no such table
    */
-  public Table findTable(String name, List<Table> tables) {
-    for (Table table : tables) {
-      if (table.getDbname().equalsIgnoreCase(name)) {
-        return table;
-      }
+  public Table findTable(String name) {
+    Table table = tablesByName.get(name.toLowerCase());
+    if (table == null) {
+      throw new IllegalArgumentException("Unknown table '" + name + "'");
     }
-    return null;
+    return table;
   }
 
 
@@ -0,0 +1,257 @@
+<?php 
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+?><?php 
+	/**
+	 * Deletes or updates many rows of a table by key, a chunk of keys to a statement with IN lists,
+	 * in one transaction. Reports which of the keys succeeded so the Crud can still answer id by id.
+	 *
+	 * A chunk that fails, a foreign key restricting a delete say, is retried key by key within the
+	 * transaction to find the keys at fault, the rest of the chunk still succeeds.
+	 *
+	 * The statements run through Db with the keys bound, full chunks share one prepared statement.
+	 */
+	class BatchSql {
+
+		/** the most keys in one IN list */
+		static $CHUNK_SIZE = 500;
+
+		var $table;
+		var $key;
+		var $conditions;
+		var $historyKey;
+		var $historyDiff;
+		var $historyExcluded;
+
+
+		/**
+		 * @param $table the table changed
+		 * @param $key the column the keys are matched against, usually the primary key
+		 * @param $conditions column => value every row changed must also match, for link tables
+		 * @param $historyKey the primary key of the table, to record the changes in the history,
+		 *   NULL for none
+		 * @param $historyDiff true to record diffs with HistoryRecorder, false for snapshots of the
+		 *   rows as the DAO writes them
+		 * @param $historyExcluded column => true for the columns left out of the history, passwords
+		 */
+		function __construct($table, $key, $conditions = array(), $historyKey = NULL, $historyDiff = false, $historyExcluded = array()) {
+			$this->table = $table;
+			$this->key = $key;
+			$this->conditions = $conditions;
+			$this->historyKey = $historyKey;
+			$this->historyDiff = $historyDiff;
+			$this->historyExcluded = $historyExcluded;
+		}
+
+
+		/**
+		 * @param $ids the keys of the rows to delete
+		 * @return the keys deleted
+		 */
+		function delete($ids) {
+			return $this->run($ids, NULL, NULL);
+		}
+
+
+		/**
+		 * @param $ids the keys of the rows to update
+		 * @param $column the column set
+		 * @param $value the value it is set to
+		 * @return the keys updated
+		 */
+		function update($ids, $column, $value) {
+			return $this->run($ids, $column, $value);
+		}
+
+
+		/**
+		 * Sets a column to a value for each key with CASE, rows already at their value are not written.
+		 *
+		 * @param $column the column set
+		 * @param $values key => the value it is set to
+		 * @return the keys updated or already at their value
+		 */
+		function updateEach($column, $values) {
+			return $this->run(array_keys($values), $column, $values);
+		}
+
+
+		/**
+		 * Deletes the rows when $column is NULL, otherwise sets the column to the value or, with an
+		 * array, to the value of each key.
+		 */
+		private function run($ids, $column, $value) {
+			$done = array();
+			$history = array();
+			if (count($ids) == 0) {
+				return $done;
+			}
+			Db::begin();
+			foreach (array_chunk(array_unique($ids), self::$CHUNK_SIZE) as $chunk) {
+				// also tells which keys have no row, those fail
+				$rows = $this->select($chunk);
+				if (count($rows) == 0) {
+					continue;
+				}
+				$found = array_keys($rows);
+				$unchanged = array();
+				if (is_array($value)) {
+					foreach ($found as $id) {
+						if ((string) $rows[$id][$column] === (string) $value[$id]) {
+							$unchanged[] = $id;
+						}
+					}
+					$found = array_values(array_diff($found, $unchanged));
+				}
+				if (count($found) == 0 || $this->execute($column, $value, $found)) {
+					$changed = $found;
+				}else {
+					$changed = array();
+					foreach ($found as $id) {
+						if ($this->execute($column, $value, array($id))) {
+							$changed[] = $id;
+						}
+					}
+				}
+				if ($this->historyKey != NULL) {
+					$history = array_merge($history, $this->historyEntries($rows, $changed, $column, $value));
+				}
+				$done = array_merge($done, $unchanged, $changed);
+			}
+			if (!Db::commit()) {
+				Inform8Context::getLogger()->log(BaseLogger::$ERROR, 'batch on ' . $this->table . ' failed to commit: ' . Db::error());
+				Db::rollback();
+				return array();
+			}
+			// only once committed, nothing is recorded for changes rolled back
+			$this->recordHistory($history, $column);
+			return $done;
+		}
+
+
+		/**
+		 * @return the rows of the keys, by key
+		 */
+		private function select($ids) {
+			$rows = array();
+			$result = Db::query('SELECT * FROM `' . $this->table . '` WHERE ' . $this->where($ids), $this->whereParams($ids));
+			if ($result === FALSE) {
+				Inform8Context::getLogger()->log(BaseLogger::$ERROR, 'batch select on ' . $this->table . ' failed: ' . Db::error());
+				return $rows;
+			}
+			foreach ($result as $row) {
+				$rows[(string) $row[$this->key]] = $row;
+			}
+			return $rows;
+		}
+
+
+		/**
+		 * @return true if the rows of the keys were changed
+		 */
+		private function execute($column, $value, $ids) {
+			$params = array();
+			if ($column == NULL) {
+				$sql = 'DELETE FROM `' . $this->table . '` WHERE ' . $this->where($ids);
+			}else if (is_array($value)) {
+				$cases = '';
+				foreach ($ids as $id) {
+					$cases .= ' WHEN ? THEN ?';
+					$params[] = $id;
+					$params[] = $value[$id];
+				}
+				$sql = 'UPDATE `' . $this->table . '` SET `' . $column . '` = CASE `' . $this->key . '`' . $cases . ' END WHERE ' . $this->where($ids);
+			}else {
+				$sql = 'UPDATE `' . $this->table . '` SET `' . $column . '` = ? WHERE ' . $this->where($ids);
+				$params[] = $value;
+			}
+			// an error rolls back just this statement, the transaction carries on
+			$affected = Db::execute($sql, array_merge($params, $this->whereParams($ids)));
+			if ($affected === FALSE) {
+				Inform8Context::getLogger()->log(BaseLogger::$WARN, 'batch on ' . $this->table . ' failed: ' . Db::error());
+				return false;
+			}
+			// an update to the value a row already has changes nothing but still succeeds, a delete
+			// from a link table may remove more rows than keys where a link is held twice
+			return $column != NULL || $affected >= count($ids);
+		}
+
+
+		/**
+		 * @return the where clause of the keys, a ? for each value of whereParams
+		 */
+		private function where($ids) {
+			$where = '`' . $this->key . '` IN (' . implode(',', array_fill(0, count($ids), '?')) . ')';
+			foreach ($this->conditions as $column => $value) {
+				$where .= ' AND `' . $column . '` = ?';
+			}
+			return $where;
+		}
+
+
+		private function whereParams($ids) {
+			return array_merge(array_values($ids), array_values($this->conditions));
+		}
+
+
+		/**
+		 * @return the changed rows to record, each its primary key, the row before the change without
+		 *   the excluded columns and the value the column was set to, NULL for a delete
+		 */
+		private function historyEntries($rows, $changed, $column, $value) {
+			$entries = array();
+			if ($column != NULL && isset($this->historyExcluded[$column])) {
+				return $entries;
+			}
+			foreach ($changed as $id) {
+				$row = array_diff_key($rows[$id], $this->historyExcluded);
+				$entries[] = array($rows[$id][$this->historyKey], $row,
+					$column == NULL ? NULL : (is_array($value) ? $value[$id] : $value));
+			}
+			return $entries;
+		}
+
+
+		/**
+		 * Records the rows as deleted or the column as updated, as diffs or as snapshots of the rows
+		 * after the change, a deleted row as it was.
+		 */
+		private function recordHistory($entries, $column) {
+			if ($this->historyDiff) {
+				foreach ($entries as $entry) {
+					list($id, $row, $after) = $entry;
+					if ($column == NULL) {
+						HistoryRecorder::record($this->table, $id, $row, NULL);
+					}else {
+						HistoryRecorder::record($this->table, $id, array($column => $row[$column]), array($column => $after));
+					}
+				}
+				return;
+			}
+
+			$user = Session::getInstance()->getAuthenticationManager()->getUser();
+			$userId = is_object($user) ? $user->getPk() : NULL;
+			foreach (array_chunk($entries, HistoryRecorder::$BATCH_SIZE) as $chunk) {
+				$params = array();
+				foreach ($chunk as $entry) {
+					list($id, $row, $after) = $entry;
+					if ($column != NULL) {
+						$row[$column] = $after;
+					}
+					array_push($params, $this->table, $id, json_encode($row), $userId);
+				}
+				$sql = 'INSERT INTO `' . HistorySettings::$TABLE . '` (`TableName`, `RecordId`, `Json`, `Created`, `ModifiedBy`) VALUES '
+					. implode(',', array_fill(0, count($chunk), '(?,?,?,NOW(),?)'));
+				if (Db::execute($sql, $params) === FALSE) {
+					Inform8Context::getLogger()->log(BaseLogger::$WARN, 'batch history of ' . $this->table . ' failed: ' . Db::error());
+				}
+			}
+		}
+
+	}
+?>
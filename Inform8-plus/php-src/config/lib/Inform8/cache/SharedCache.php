@@ -0,0 +1,109 @@
+<?php 
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+?><?php 
+	/**
+	 * Values shared by every request, kept in APCu, or APC, when it is enabled and otherwise in a
+	 * file each in the temporary folder. Values are strings and expire after the TTL given.
+	 */
+	class SharedCache {
+
+		/**
+		 * @return the cached value, NULL if not cached or expired
+		 */
+		public static function get($name) {
+			$key = self::key($name);
+			$apc = self::apc();
+			if ($apc != NULL) {
+				$fetch = $apc . 'fetch';
+				$value = $fetch($key, $found);
+				return $found ? $value : NULL;
+			}
+
+			$data = @file_get_contents(self::file($key));
+			if ($data === FALSE) {
+				return NULL;
+			}
+			// the first line is the time the value expires
+			$eol = strpos($data, "\n");
+			if ($eol === FALSE || intval(substr($data, 0, $eol)) < time()) {
+				return NULL;
+			}
+			return substr($data, $eol + 1);
+		}
+
+
+		/**
+		 * @param $value the value, a string
+		 * @param $ttl seconds the value is kept
+		 */
+		public static function put($name, $value, $ttl) {
+			$key = self::key($name);
+			$apc = self::apc();
+			if ($apc != NULL) {
+				$store = $apc . 'store';
+				$store($key, $value, $ttl);
+				return;
+			}
+
+			$file = self::file($key);
+			$folder = dirname($file);
+			if (!is_dir($folder) && !@mkdir($folder, 0700, true)) {
+				return;
+			}
+			// written aside and renamed, a request reading at the same time never sees part of it
+			$temp = @tempnam($folder, 'i8');
+			if ($temp === FALSE) {
+				return;
+			}
+			if (@file_put_contents($temp, (time() + $ttl) . "\n" . $value) === FALSE || !@rename($temp, $file)) {
+				@unlink($temp);
+			}
+		}
+
+
+		public static function delete($name) {
+			$key = self::key($name);
+			$apc = self::apc();
+			if ($apc != NULL) {
+				$delete = $apc . 'delete';
+				$delete($key);
+				return;
+			}
+			@unlink(self::file($key));
+		}
+
+
+		/**
+		 * @return the function prefix of the enabled APC cache, apcu_ or apc_, NULL if neither
+		 */
+		private static function apc() {
+			if (function_exists('apcu_fetch') && ini_get('apc.enabled')) {
+				return 'apcu_';
+			}
+			if (function_exists('apc_fetch') && ini_get('apc.enabled')) {
+				return 'apc_';
+			}
+			return NULL;
+		}
+
+
+		/**
+		 * Keys include the install folder, so sites sharing a server never see each other's values.
+		 */
+		private static function key($name) {
+			return 'inform8.' . md5(dirname(__FILE__)) . '.' . $name;
+		}
+
+
+		private static function file($key) {
+			return sys_get_temp_dir() . '/inform8-cache/' . md5($key);
+		}
+
+	}
+?>
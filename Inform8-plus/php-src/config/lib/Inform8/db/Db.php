@@ -0,0 +1,214 @@
+<?php 
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+?><?php 
+	/**
+	 * The mysqli connection of the site, opened the first time it is needed, persistent unless
+	 * configured otherwise so each PHP process reuses one connection across requests. mysqli resets
+	 * a persistent connection as it is reused, a transaction left open by a request never carries on.
+	 *
+	 * Queries are prepared statements, the values bound rather than written into the SQL. Each SQL
+	 * is prepared once a request and the statement reused, so SQL should differ by its shape, the
+	 * number of values say, and never by the values themselves.
+	 *
+	 * Failures return FALSE, error() tells why.
+	 */
+	class Db {
+
+		/** the most statements kept prepared in a request */
+		static $MAX_STATEMENTS = 100;
+
+		private static $settings = NULL;
+		private static $link = NULL;
+		private static $statements = array();
+
+
+		/**
+		 * @param $persistent true to reuse a connection of the process rather than open one a request
+		 */
+		public static function configure($host, $name, $user, $password, $persistent) {
+			self::$settings = array(($persistent ? 'p:' : '') . $host, $user, $password, $name);
+		}
+
+
+		/**
+		 * @return the connection, NULL if it could not be opened
+		 */
+		public static function link() {
+			if (self::$link === NULL && self::$settings !== NULL) {
+				$link = @mysqli_connect(self::$settings[0], self::$settings[1], self::$settings[2], self::$settings[3]);
+				if ($link) {
+					self::$link = $link;
+				}
+			}
+			return self::$link;
+		}
+
+
+		/**
+		 * @param $sql a select, with a ? for each value
+		 * @param $params the values
+		 * @return the rows, each column => value, FALSE on failure
+		 */
+		public static function query($sql, $params = array()) {
+			$statement = self::run($sql, $params);
+			if ($statement === FALSE) {
+				return FALSE;
+			}
+			$rows = self::fetch($statement);
+			$statement->free_result();
+			return $rows;
+		}
+
+
+		/**
+		 * @param $sql an insert, update or delete, with a ? for each value
+		 * @param $params the values
+		 * @return the number of rows changed, FALSE on failure
+		 */
+		public static function execute($sql, $params = array()) {
+			$statement = self::run($sql, $params);
+			return $statement === FALSE ? FALSE : $statement->affected_rows;
+		}
+
+
+		public static function begin() {
+			return self::link() != NULL && self::$link->query('START TRANSACTION');
+		}
+
+
+		public static function commit() {
+			return self::link() != NULL && self::$link->query('COMMIT');
+		}
+
+
+		public static function rollback() {
+			return self::link() != NULL && self::$link->query('ROLLBACK');
+		}
+
+
+		/**
+		 * @return the error of the last failure
+		 */
+		public static function error() {
+			if (self::$link === NULL) {
+				return self::$settings === NULL ? 'not configured' : mysqli_connect_error();
+			}
+			return self::$link->error;
+		}
+
+
+		/**
+		 * Closes the statements and hands the connection back, a persistent one to the process.
+		 * PHP does the same as the request ends.
+		 */
+		public static function close() {
+			foreach (self::$statements as $statement) {
+				$statement->close();
+			}
+			self::$statements = array();
+			if (self::$link !== NULL) {
+				self::$link->close();
+				self::$link = NULL;
+			}
+		}
+
+
+		/**
+		 * @return the statement of the SQL executed with the values, FALSE on failure
+		 */
+		private static function run($sql, $params) {
+			$statement = self::prepare($sql);
+			if ($statement === FALSE) {
+				return FALSE;
+			}
+			if (count($params) > 0) {
+				$types = '';
+				$values = array();
+				foreach (array_values($params) as $i => $value) {
+					$types .= is_int($value) ? 'i' : (is_float($value) ? 'd' : 's');
+					$values[$i] = $value;
+				}
+				// bind_param takes references
+				$args = array($types);
+				foreach ($values as $i => $value) {
+					$args[] = &$values[$i];
+				}
+				if (!call_user_func_array(array($statement, 'bind_param'), $args)) {
+					return FALSE;
+				}
+			}
+			return $statement->execute() ? $statement : FALSE;
+		}
+
+
+		private static function prepare($sql) {
+			if (isset(self::$statements[$sql])) {
+				return self::$statements[$sql];
+			}
+			if (self::link() == NULL) {
+				return FALSE;
+			}
+			$statement = self::$link->prepare($sql);
+			if (!$statement) {
+				return FALSE;
+			}
+			if (count(self::$statements) >= self::$MAX_STATEMENTS) {
+				// the first prepared goes
+				reset(self::$statements);
+				$first = key(self::$statements);
+				self::$statements[$first]->close();
+				unset(self::$statements[$first]);
+			}
+			self::$statements[$sql] = $statement;
+			return $statement;
+		}
+
+
+		/**
+		 * @return the rows of the executed statement
+		 */
+		private static function fetch($statement) {
+			$rows = array();
+			// with mysqlnd
+			if (method_exists($statement, 'get_result')) {
+				$result = $statement->get_result();
+				if ($result) {
+					while ($row = $result->fetch_assoc()) {
+						$rows[] = $row;
+					}
+					$result->free();
+				}
+				return $rows;
+			}
+
+			$meta = $statement->result_metadata();
+			if (!$meta) {
+				return $rows;
+			}
+			$statement->store_result();
+			$row = array();
+			$args = array();
+			foreach ($meta->fetch_fields() as $field) {
+				$row[$field->name] = NULL;
+				$args[] = &$row[$field->name];
+			}
+			$meta->free();
+			call_user_func_array(array($statement, 'bind_result'), $args);
+			while ($statement->fetch()) {
+				$copy = array();
+				foreach ($row as $column => $value) {
+					$copy[$column] = $value;
+				}
+				$rows[] = $copy;
+			}
+			return $rows;
+		}
+
+	}
+?>
@@ -0,0 +1,43 @@
+<?php 
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+?><?php 
+	/**
+	 * Streams the export to the browser as UTF-8 CSV, each row is sent as it is written.
+	 */
+	class CsvExportWriter extends ExportWriter {
+
+		/** rows written between flushes of the output */
+		static $FLUSH_ROWS = 500;
+
+		var $out;
+		var $rows = 0;
+
+		function begin() {
+			header('Content-Type: text/csv; charset=UTF-8');
+			header('Content-Disposition: attachment;filename="' . $this->name . '.csv"');
+			header('Cache-Control: max-age=0');
+			$this->out = fopen('php://output', 'w');
+			// the byte order mark tells Excel the file is UTF-8
+			fwrite($this->out, "\xEF\xBB\xBF");
+		}
+
+		function writeRow($values) {
+			fputcsv($this->out, $values);
+			if (++$this->rows % self::$FLUSH_ROWS == 0) {
+				fflush($this->out);
+				flush();
+			}
+		}
+
+		function finish() {
+			fclose($this->out);
+		}
+
+	}
+?>
\ No newline at end of file
@@ -0,0 +1,50 @@
+<?php 
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+?><?php 
+	/**
+	 * Writes an export one row at a time, so the rows never need to be held in memory together.
+	 *
+	 * begin(), writeRow() for the header and every row, then finish().
+	 */
+	abstract class ExportWriter {
+
+		var $name;
+
+		function __construct($name) {
+			$this->name = $name;
+		}
+
+		/**
+		 * Starts the export, before the first row.
+		 */
+		abstract function begin();
+
+		/**
+		 * @param $values the cell values of the row, in column order
+		 */
+		abstract function writeRow($values);
+
+		/**
+		 * Completes the export and sends whatever is left of it.
+		 */
+		abstract function finish();
+
+		/**
+		 * @param $format csv or xlsx, xlsx needs the zip extension and falls back to csv without it
+		 * @param $name the sheet and file name
+		 */
+		public static function create($format, $name) {
+			if ($format == 'csv' || !class_exists('ZipArchive')) {
+				return new CsvExportWriter($name);
+			}
+			return new XlsxExportWriter($name);
+		}
+
+	}
+?>
\ No newline at end of file
@@ -0,0 +1,153 @@
+<?php 
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+?><?php 
+	/**
+	 * Writes the export as a single sheet XLSX workbook.
+	 *
+	 * Each row is appended to the sheet XML in a temporary file as it is written, with the strings
+	 * inline rather than in a shared string table, so nothing grows in memory with the rows. The
+	 * workbook is zipped from the temporary file and sent when finished.
+	 */
+	class XlsxExportWriter extends ExportWriter {
+
+		static $MAIN_NS = 'http://schemas.openxmlformats.org/spreadsheetml/2006/main';
+		static $REL_NS = 'http://schemas.openxmlformats.org/officeDocument/2006/relationships';
+
+		var $sheetFile;
+		var $sheet;
+		var $rows = 0;
+
+		function begin() {
+			$this->sheetFile = tempnam(sys_get_temp_dir(), 'i8xlsx');
+			$this->sheet = fopen($this->sheetFile, 'w');
+			fwrite($this->sheet, '<?xml version="1.0" encoding="UTF-8" standalone="yes"?>' . "\n"
+				. '<worksheet xmlns="' . self::$MAIN_NS . '"><sheetData>');
+		}
+
+		function writeRow($values) {
+			$r = ++$this->rows;
+			// the first row is the header, in bold
+			$style = $r == 1 ? ' s="1"' : '';
+			$xml = '<row r="' . $r . '">';
+			$column = 0;
+			foreach ($values as $value) {
+				$ref = self::columnName($column++) . $r;
+				if ($value === NULL || $value === '') {
+					continue;
+				}
+				if (self::isNumber($value)) {
+					$xml .= '<c r="' . $ref . '"' . $style . '><v>' . $value . '</v></c>';
+				}else {
+					$xml .= '<c r="' . $ref . '"' . $style . ' t="inlineStr"><is><t xml:space="preserve">' . self::escape($value) . '</t></is></c>';
+				}
+			}
+			fwrite($this->sheet, $xml . '</row>');
+		}
+
+		function finish() {
+			fwrite($this->sheet, '</sheetData></worksheet>');
+			fclose($this->sheet);
+
+			$zipFile = tempnam(sys_get_temp_dir(), 'i8zip');
+			$zip = new ZipArchive();
+			$zip->open($zipFile, ZipArchive::OVERWRITE);
+			$zip->addFromString('[Content_Types].xml', self::contentTypes());
+			$zip->addFromString('_rels/.rels', self::relationships(array(
+				'rId1' => array('officeDocument', 'xl/workbook.xml'))));
+			$zip->addFromString('xl/workbook.xml', '<?xml version="1.0" encoding="UTF-8" standalone="yes"?>' . "\n"
+				. '<workbook xmlns="' . self::$MAIN_NS . '" xmlns:r="' . self::$REL_NS . '"><sheets>'
+				. '<sheet name="' . self::escape(self::sheetName($this->name)) . '" sheetId="1" r:id="rId1"/></sheets></workbook>');
+			$zip->addFromString('xl/_rels/workbook.xml.rels', self::relationships(array(
+				'rId1' => array('worksheet', 'worksheets/sheet1.xml'),
+				'rId2' => array('styles', 'styles.xml'))));
+			$zip->addFromString('xl/styles.xml', self::styles());
+			// read from the file as the zip is written
+			$zip->addFile($this->sheetFile, 'xl/worksheets/sheet1.xml');
+			$zip->close();
+			unlink($this->sheetFile);
+
+			header('Content-Type: application/vnd.openxmlformats-officedocument.spreadsheetml.sheet');
+			header('Content-Disposition: attachment;filename="' . $this->name . '.xlsx"');
+			header('Content-Length: ' . filesize($zipFile));
+			header('Cache-Control: max-age=0');
+			readfile($zipFile);
+			unlink($zipFile);
+		}
+
+		/**
+		 * @return the column letters, A for 0, Z for 25, AA for 26
+		 */
+		public static function columnName($column) {
+			$name = '';
+			for ($column++; $column > 0; $column = intval(($column - 1) / 26)) {
+				$name = chr(65 + ($column - 1) % 26) . $name;
+			}
+			return $name;
+		}
+
+		/**
+		 * Numbers are written as numbers, except those Excel would change such as leading zeros or
+		 * more digits than it keeps.
+		 */
+		static function isNumber($value) {
+			if (is_int($value) || is_float($value)) {
+				return is_finite($value);
+			}
+			return is_string($value) && preg_match('/^-?(0|[1-9][0-9]{0,14})(\.[0-9]{1,15})?$/', $value);
+		}
+
+		static function escape($value) {
+			// characters not allowed in XML
+			$value = preg_replace('/[\x00-\x08\x0B\x0C\x0E-\x1F]/', '', (string) $value);
+			return htmlspecialchars($value, ENT_QUOTES, 'UTF-8');
+		}
+
+		static function sheetName($name) {
+			$name = str_replace(array('[', ']', ':', '*', '?', '/', '\\'), '', $name);
+			return $name == '' ? 'Sheet1' : substr($name, 0, 31);
+		}
+
+		static function contentTypes() {
+			$type = 'application/vnd.openxmlformats-officedocument.spreadsheetml.';
+			return '<?xml version="1.0" encoding="UTF-8" standalone="yes"?>' . "\n"
+				. '<Types xmlns="http://schemas.openxmlformats.org/package/2006/content-types">'
+				. '<Default Extension="rels" ContentType="application/vnd.openxmlformats-package.relationships+xml"/>'
+				. '<Default Extension="xml" ContentType="application/xml"/>'
+				. '<Override PartName="/xl/workbook.xml" ContentType="' . $type . 'sheet.main+xml"/>'
+				. '<Override PartName="/xl/worksheets/sheet1.xml" ContentType="' . $type . 'worksheet+xml"/>'
+				. '<Override PartName="/xl/styles.xml" ContentType="' . $type . 'styles+xml"/>'
+				. '</Types>';
+		}
+
+		static function relationships($targets) {
+			$xml = '<?xml version="1.0" encoding="UTF-8" standalone="yes"?>' . "\n"
+				. '<Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">';
+			foreach ($targets as $id => $target) {
+				$xml .= '<Relationship Id="' . $id . '" Type="' . self::$REL_NS . '/' . $target[0] . '" Target="' . $target[1] . '"/>';
+			}
+			return $xml . '</Relationships>';
+		}
+
+		/**
+		 * The default style and a bold one for the header.
+		 */
+		static function styles() {
+			return '<?xml version="1.0" encoding="UTF-8" standalone="yes"?>' . "\n"
+				. '<styleSheet xmlns="' . self::$MAIN_NS . '">'
+				. '<fonts count="2"><font><sz val="11"/><name val="Calibri"/></font><font><b/><sz val="11"/><name val="Calibri"/></font></fonts>'
+				. '<fills count="2"><fill><patternFill patternType="none"/></fill><fill><patternFill patternType="gray125"/></fill></fills>'
+				. '<borders count="1"><border><left/><right/><top/><bottom/><diagonal/></border></borders>'
+				. '<cellStyleXfs count="1"><xf numFmtId="0" fontId="0" fillId="0" borderId="0"/></cellStyleXfs>'
+				. '<cellXfs count="2"><xf numFmtId="0" fontId="0" fillId="0" borderId="0" xfId="0"/>'
+				. '<xf numFmtId="0" fontId="1" fillId="0" borderId="0" xfId="0" applyFont="1"/></cellXfs>'
+				. '</styleSheet>';
+		}
+
+	}
+?>
\ No newline at end of file
@@ -0,0 +1,46 @@
+<?php 
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+?><?php 
+	/**
+	 * Caches the foreign key values of a table, the JSON the FkData pages send, keyed by the table
+	 * and the member shown.
+	 *
+	 * The values are kept in the SharedCache, shared by every request, and expire after the TTL
+	 * given. The Crud operations drop them as soon as the table changes.
+	 */
+	class FkValueCache {
+
+		/**
+		 * @return the cached JSON, NULL if not cached or expired
+		 */
+		public static function get($table, $member) {
+			return SharedCache::get(self::name($table, $member));
+		}
+
+
+		/**
+		 * @param $json the values
+		 * @param $ttl seconds the values are kept
+		 */
+		public static function put($table, $member, $json, $ttl) {
+			SharedCache::put(self::name($table, $member), $json, $ttl);
+		}
+
+
+		public static function invalidate($table, $member) {
+			SharedCache::delete(self::name($table, $member));
+		}
+
+
+		private static function name($table, $member) {
+			return 'fk.' . $table . '.' . $member;
+		}
+
+	}
+?>
@@ -0,0 +1,157 @@
+<?php 
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+?><?php 
+	/**
+	 * Records changes to the History table as field level diffs.
+	 *
+	 * Entries are buffered for the request and written after the response has been sent, a multi
+	 * row insert for the lot, so a save costs no extra round trip to the database while the user
+	 * waits. Larger entries are compressed. Now and then a flush also prunes the entries of its
+	 * tables older than their retention, see HistorySettings.
+	 *
+	 * The Json of an entry is {"op":"c|u|d","fields":{"Column":[old, new]}}, or that deflated and
+	 * base64 encoded after a gz: prefix, decode() reads either.
+	 */
+	class HistoryRecorder {
+
+		/** the most entries in one insert */
+		static $BATCH_SIZE = 200;
+
+		/** a flush in this many prunes the tables it wrote to */
+		static $PRUNE_EVERY = 50;
+
+		/** the most entries a table has pruned at a time */
+		static $PRUNE_LIMIT = 1000;
+
+		private static $buffer = array();
+		private static $registered = false;
+
+
+		/**
+		 * @param $table the table changed
+		 * @param $id the primary key of the row
+		 * @param $before column => value before the change, NULL when created
+		 * @param $after column => value after the change, NULL when deleted
+		 */
+		public static function record($table, $id, $before, $after) {
+			$fields = array();
+			if ($before === NULL) {
+				$op = 'c';
+				foreach ($after as $column => $value) {
+					$fields[$column] = array(NULL, $value);
+				}
+			}else if ($after === NULL) {
+				$op = 'd';
+				foreach ($before as $column => $value) {
+					$fields[$column] = array($value, NULL);
+				}
+			}else {
+				$op = 'u';
+				foreach ($after as $column => $value) {
+					$old = array_key_exists($column, $before) ? $before[$column] : NULL;
+					if ((string) $old !== (string) $value) {
+						$fields[$column] = array($old, $value);
+					}
+				}
+				if (count($fields) == 0) {
+					return;
+				}
+			}
+
+			$user = Session::getInstance()->getAuthenticationManager()->getUser();
+			self::$buffer[] = array(
+				'table' => $table,
+				'id' => $id,
+				'json' => self::encode(json_encode(array('op' => $op, 'fields' => $fields))),
+				'userId' => is_object($user) ? $user->getPk() : NULL,
+				'userName' => is_object($user) ? $user->getUsername() : NULL);
+
+			if (!self::$registered) {
+				register_shutdown_function(array('HistoryRecorder', 'flush'));
+				self::$registered = true;
+			}
+		}
+
+
+		/**
+		 * Writes the buffered entries, called on shutdown.
+		 */
+		public static function flush() {
+			if (count(self::$buffer) == 0) {
+				return;
+			}
+			// the response is complete, the client need not wait for the writes
+			if (function_exists('fastcgi_finish_request')) {
+				fastcgi_finish_request();
+			}
+
+			$tables = array();
+			foreach (array_chunk(self::$buffer, self::$BATCH_SIZE) as $chunk) {
+				$params = array();
+				foreach ($chunk as $entry) {
+					$tables[$entry['table']] = true;
+					array_push($params, $entry['table'], $entry['id'], $entry['json'], $entry['userId'], $entry['userName']);
+				}
+				// full batches share one prepared statement
+				$sql = 'INSERT INTO `' . HistorySettings::$TABLE . '` (`TableName`, `RecordId`, `Json`, `Created`, `ModifiedBy`, `ModifiedByName`) VALUES '
+					. implode(',', array_fill(0, count($chunk), '(?,?,?,NOW(),?,?)'));
+				if (Db::execute($sql, $params) === FALSE) {
+					Inform8Context::getLogger()->log(BaseLogger::$ERROR, 'history insert failed: ' . Db::error());
+				}
+			}
+			self::$buffer = array();
+
+			if (mt_rand(1, self::$PRUNE_EVERY) == 1) {
+				self::prune(array_keys($tables));
+			}
+		}
+
+
+		/**
+		 * Deletes the oldest entries of the tables past their retention, at most PRUNE_LIMIT a table.
+		 */
+		public static function prune($tables) {
+			foreach ($tables as $table) {
+				$days = isset(HistorySettings::$RETENTION_DAYS[$table]) ? intval(HistorySettings::$RETENTION_DAYS[$table]) : 0;
+				if ($days <= 0) {
+					continue;
+				}
+				$sql = 'DELETE FROM `' . HistorySettings::$TABLE . '` WHERE `TableName` = ?'
+					. ' AND `Created` < DATE_SUB(NOW(), INTERVAL ? DAY) ORDER BY `Created` LIMIT ' . intval(self::$PRUNE_LIMIT);
+				if (Db::execute($sql, array($table, $days)) === FALSE) {
+					Inform8Context::getLogger()->log(BaseLogger::$WARN, 'history prune of ' . $table . ' failed: ' . Db::error());
+				}
+			}
+		}
+
+
+		/**
+		 * @return the entry, compressed when larger than HistorySettings::$COMPRESS_BYTES
+		 */
+		static function encode($json) {
+			if (HistorySettings::$COMPRESS_BYTES > 0 && strlen($json) > HistorySettings::$COMPRESS_BYTES
+			    && function_exists('gzdeflate')) {
+				return 'gz:' . base64_encode(gzdeflate($json, 6));
+			}
+			return $json;
+		}
+
+
+		/**
+		 * @return the Json of an entry, inflated if compressed
+		 */
+		public static function decode($json) {
+			if (strncmp($json, 'gz:', 3) == 0) {
+				return gzinflate(base64_decode(substr($json, 3)));
+			}
+			return $json;
+		}
+
+	}
+?>
@@ -0,0 +1,88 @@
+<?php 
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+?><?php 
+	/**
+	 * Caches the order of the columns of each grid, as read from the render settings, so opening a
+	 * grid costs no query once the order has been read.
+	 *
+	 * The orders are kept in the SharedCache under a version, and dropped together by moving to a
+	 * new version whenever the render settings change, as a change may be to any table's columns.
+	 * Each order is also kept under a signature of the columns of the generated grid, so a grid
+	 * generated again with other columns never reads the order of the old ones.
+	 */
+	class ColumnOrderCache {
+
+		/** seconds an order is kept */
+		static $TTL = 3600;
+
+		/** seconds the version is kept, longer than any order */
+		static $VERSION_TTL = 2592000;
+
+		private static $orders = array();
+		private static $version = NULL;
+
+
+		/**
+		 * @param $signature identifies the columns of the generated grid
+		 * @return the column names of the table in order, NULL if not cached
+		 */
+		public static function get($table, $signature) {
+			$name = self::name($table, $signature);
+			if (isset(self::$orders[$name])) {
+				return self::$orders[$name];
+			}
+			$json = SharedCache::get($name);
+			$columns = $json === NULL ? NULL : json_decode($json);
+			if (!is_array($columns)) {
+				return NULL;
+			}
+			self::$orders[$name] = $columns;
+			return $columns;
+		}
+
+
+		/**
+		 * @param $signature identifies the columns of the generated grid
+		 * @param $columns the column names of the table in order
+		 */
+		public static function put($table, $signature, $columns) {
+			$name = self::name($table, $signature);
+			self::$orders[$name] = $columns;
+			SharedCache::put($name, json_encode($columns), self::$TTL);
+		}
+
+
+		/**
+		 * Drops the orders of every table, called when the render settings change.
+		 */
+		public static function invalidate() {
+			self::$orders = array();
+			self::$version = self::newVersion();
+		}
+
+
+		private static function name($table, $signature) {
+			if (self::$version === NULL) {
+				self::$version = SharedCache::get('jqgrid.version');
+				if (self::$version === NULL) {
+					self::$version = self::newVersion();
+				}
+			}
+			return 'jqgrid.' . self::$version . '.' . $table . '.' . $signature;
+		}
+
+
+		private static function newVersion() {
+			$version = md5(uniqid(mt_rand(), true));
+			SharedCache::put('jqgrid.version', $version, self::$VERSION_TTL);
+			return $version;
+		}
+
+	}
+?>
@@ -0,0 +1,123 @@
+<?php 
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+?><?php 
+	/**
+	 * The language entries when split by table: the general entries, and those of each table loaded
+	 * from its file the first time one of them is read. Used as the $langArray of the language.
+	 *
+	 * The table of a key is the longest table name after Tbl_ up to an _ or the end of the key, as
+	 * LanguageGenerator.getTableOf splits the entries.
+	 */
+	class LangBundle implements ArrayAccess, IteratorAggregate, Countable {
+
+		private $folder;
+		private $entries;
+		private $tables;
+		private $loaded = array();
+
+
+		/**
+		 * @param $folder the folder of the table files, Table.php each returning its entries
+		 * @param $entries the general entries
+		 * @param $tables table name => true, for every table with a file
+		 */
+		function __construct($folder, $entries, $tables) {
+			$this->folder = $folder;
+			$this->entries = $entries;
+			$this->tables = $tables;
+		}
+
+
+		public function offsetExists($key) {
+			$this->load($key);
+			return isset($this->entries[$key]);
+		}
+
+
+		public function offsetGet($key) {
+			$this->load($key);
+			return isset($this->entries[$key]) ? $this->entries[$key] : NULL;
+		}
+
+
+		public function offsetSet($key, $value) {
+			$this->load($key);
+			if ($key === NULL) {
+				$this->entries[] = $value;
+			}else {
+				$this->entries[$key] = $value;
+			}
+		}
+
+
+		public function offsetUnset($key) {
+			$this->load($key);
+			unset($this->entries[$key]);
+		}
+
+
+		/**
+		 * Iterating needs every entry, all the tables are loaded.
+		 */
+		public function getIterator() {
+			foreach ($this->tables as $table => $exists) {
+				$this->loadTable($table);
+			}
+			return new ArrayIterator($this->entries);
+		}
+
+
+		public function count() {
+			return count($this->getIterator());
+		}
+
+
+		/**
+		 * @return the table of the key, NULL for a general entry
+		 */
+		public function tableOf($key) {
+			if (strncmp($key, 'Tbl_', 4) != 0) {
+				return NULL;
+			}
+			$rest = substr($key, 4);
+			$found = NULL;
+			for ($i = strpos($rest, '_'); ; $i = strpos($rest, '_', $i + 1)) {
+				$candidate = $i === FALSE ? $rest : substr($rest, 0, $i);
+				if (isset($this->tables[$candidate])) {
+					$found = $candidate;
+				}
+				if ($i === FALSE) {
+					return $found;
+				}
+			}
+		}
+
+
+		private function load($key) {
+			$table = $this->tableOf((string) $key);
+			if ($table != NULL) {
+				$this->loadTable($table);
+			}
+		}
+
+
+		private function loadTable($table) {
+			if (isset($this->loaded[$table])) {
+				return;
+			}
+			$this->loaded[$table] = true;
+			$file = $this->folder . '/' . $table . '.php';
+			if (is_file($file)) {
+				// entries already set win, as they were set after the language was loaded
+				$this->entries += require $file;
+			}
+		}
+
+	}
+?>
@@ -11,15 +11,29 @@
     // site settings + config + seession load
     require_once 'config/settings.php';
 
-    header('Content-Type: application/vnd.openxmlformats-officedocument.spreadsheetml.sheet');
-    header('Content-Disposition: attachment;filename="export.xls"');
-    header('Cache-Control: max-age=0');
-
 	//TODO add security checks
 	$reqobj = Request::getOrPost("object");
 	$field = Request::getOrPost("field");
 	$value = Request::getOrPost("value");
 	$expanded = Request::getOrPost("expanded");
+	// xlsx or csv stream the rows as they are read, xls builds the whole workbook in memory
+	$format = strtolower(Request::getOrPost("format"));
+
+	$reqBuilder = $reqobj."ExcelBuilder";
+	$builder = new $reqBuilder();
+
+	if ($format != 'xls') {
+		set_time_limit(0);
+		$writer = ExportWriter::create($format, $reqobj);
+		$writer->begin();
+		$builder->export($writer, $expanded == '1', $field, $value);
+		$writer->finish();
+		exit;
+	}
+
+    header('Content-Type: application/vnd.ms-excel');
+    header('Content-Disposition: attachment;filename="export.xls"');
+    header('Cache-Control: max-age=0');
 
 	$reqDao = $reqobj."Dao";
 	$dao = new $reqDao();
@@ -32,9 +46,6 @@
 		die;
 	}
 	$objCount = count($objs);
-		
-	$reqBuilder = $reqobj."ExcelBuilder";
-	$builder = new $reqBuilder();
 	
 	/** Include path **/
 	ini_set('include_path', ini_get('include_path').':plugins/phpexcel/');
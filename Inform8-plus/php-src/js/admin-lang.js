@@ -10,8 +10,33 @@
  */
 
 function getLanguageEntry(entry) {
-	if(entry in window.I8.langs[window.I8.user.lang]) {
-		return window.I8.langs[window.I8.user.lang][entry];
+	var lang = window.I8.langs[window.I8.user.lang];
+	if(lang && entry in lang) {
+		return lang[entry];
 	}
 	return entry;
+}
+
+/**
+ * Called by each language pack, js/lang/<language>.<hash>.js, with its entries.
+ */
+function addLanguage(langKey, entries) {
+	window.I8.langs[langKey] = entries;
+}
+
+/**
+ * Loads the pack of a language when first needed, the callback is called once its entries are
+ * available. The pack names change with their content so the browser may cache them forever.
+ */
+function loadLanguage(langKey, callback) {
+	if(langKey in window.I8.langs) {
+		callback();
+		return;
+	}
+	$.ajax({
+		url: window.I8.langPacks[langKey],
+		dataType: 'script',
+		cache: true,
+		success: callback
+	});
 }
\ No newline at end of file
@@ -39,124 +39,70 @@
 	$limit = Request::getOrPost('rows'); // get how many rows we want to have into the grid 
 	$sidx = Request::getOrPost('sidx'); // get index row - i.e. user click to sort 
 	$sord = Request::getOrPost('sord'); // get the direction 
-	$start = $limit*$page - $limit;
 	//print_r($_GET);
 	
-	$reqDao = $reqobj."Dao";
-	$dao = new $reqDao();
-
-	$reqDef = $reqobj."Definition";
-	$def = new $reqDef();
-
-	$reqBuilder = $reqobj."JqGridBuilder";
-	$builder = new $reqBuilder();
-
 	$joinTable = Request::getOrPost('joinTable');
 	$joinField = Request::getOrPost('joinField');
 	$otherJoinField = Request::getOrPost('otherJoinField');
 	
-	$totalCount = 0;
-	if ($field == 'ALL' && $value == 'ALL') {
-		$objs = $dao->getAll($limit, $start, $sidx, $sord);
-		$totalCount = $dao->countAll();
+	if ($joinTable == null) {
+		// the generated grid data pages, sorts and searches in the database
+		$reqData = $reqobj."JqGridData";
+		$data = new $reqData();
+		if ($field == 'ALL' && $value == 'ALL') {
+			$response = $data->load($page, $limit, $sidx, $sord);
+		}else {
+			$response = $data->load($page, $limit, $sidx, $sord, $field, $value, $searchOption);
+		}
+		echo json_encode($response);
+		
+	}else {
+		$limit = max(1, min(500, intval($limit)));
+		$page = max(1, intval($page));
+		$start = $limit*$page - $limit;
+		
+		$reqBuilder = $reqobj."JqGridBuilder";
+		$builder = new $reqBuilder();
+
+		//print"getWhere $field - $value - $searchOption";
+		$reqJoinDao = $joinTable."Dao";
+		$joinDao = new $reqJoinDao();
+		$joinobs = $joinDao->getWhere(array($joinField), array($value), $searchOption, $limit, $start, $sidx, $sord);
+		$totalCount = $joinDao->getWhereCount(array($joinField), array($value), $searchOption);
 		if( $totalCount >0 ) { 
 			$totalPages = ceil($totalCount/$limit); 
 		} else { 
 			$totalPages = 0; 
-		} 
-	}else {
-		//print"getWhere $field - $value - $searchOption";
-		
-		if ($joinTable != null) {
-			$reqJoinDao = $joinTable."Dao";
-			$joinDao = new $reqJoinDao();
-			$joinobs = $joinDao->getWhere(array($joinField), array($value), $searchOption, $limit, $start, $sidx, $sord);
-			$totalCount = $joinDao->getWhereCount(array($joinField), array($value), $searchOption);
-			if( $totalCount >0 ) { 
-				$totalPages = ceil($totalCount/$limit); 
-			} else { 
-				$totalPages = 0; 
-			} 			
-			$objs = array();
-			$accesor = 'get'.$otherJoinField.'Object';
-			if($joinobs != -1) {
-					foreach($joinobs as $join) {
-						$objs[] = $join->$accesor();
-					}
-			}else {
-				$objs=-1;
-			}
-		}else {		
-		  $q = IQL::select($reqobj);
-		  if (strpos($field, '.') > 0) {
-		      $fields = explode('.', $field);
-		      $field = $fields[1];
-		  }
-		  addWhereClause($q, NULL, $field, $value, $searchOption);
-		  $objs = $q->start($start)->limit($limit)->orderBy(NULL, $sidx, $sord)->get();
-		  
-		  $q = IQL::count($reqobj);
-		  addWhereClause($q, NULL, $fields[1], $value, $searchOption);
-		  $totalCount = $q->get();
-		   
-    		if( $totalCount >0 ) { 
-    			$totalPages = ceil($totalCount/$limit); 
-    		} else { 
-    			$totalPages = 0; 
-    		} 
+		} 			
+		$objs = array();
+		$accesor = 'get'.$otherJoinField.'Object';
+		if($joinobs != -1) {
+				foreach($joinobs as $join) {
+					$objs[] = $join->$accesor();
+				}
+		}else {
+			$objs=-1;
 		}
-	}
 	
-	if ($objs == -1) {
-    $response = new stdClass();
-    $response->page = 0; 
-    $response->total = 0; 
-    $response->records = 0;
-    echo json_encode($response);    
-	}
-
-	$objCount = count($objs);
-	if ($objs != -1) {
-		$response = new stdClass();
-		$response->page = $page; 
-		$response->total = $totalPages; 
-		$response->records = $totalCount;
-		
-		for ($i=0; $i < $objCount; $i++) {
-			$response->rows[$i]=$builder->toJqGridArray($objs[$i]); 
-		}		
- 
-		echo json_encode($response); 		
+		if ($objs == -1) {
+			$response = new stdClass();
+			$response->page = 0; 
+			$response->total = 0; 
+			$response->records = 0;
+			echo json_encode($response);    
+		}else {
+			$response = new stdClass();
+			$response->page = $page; 
+			$response->total = $totalPages; 
+			$response->records = $totalCount;
+			
+			$objCount = count($objs);
+			for ($i=0; $i < $objCount; $i++) {
+				$response->rows[$i]=$builder->toJqGridArray($objs[$i]); 
+			}		
+	 
+			echo json_encode($response); 		
+		}
 	}
 	
-	
-	function addWhereClause($query, $table, $field, $value, $searchOption) {
-        if ($searchOption == 'cnt') {
-            $query->where($table, $field, 'LIKE', '%'.$value.'%');
-        }else if ($searchOption == 'beg') {
-            $query->where($table, $field, 'LIKE', $value.'%');
-        }else if ($searchOption == 'end') {
-            $query->where($table, $field, 'LIKE', '%'.$value);
-        }else if ($searchOption == 'neq') {
-            $query->where($table, $field, '!=', $value);
-        }else if ($searchOption == 'lt') {
-            $query->where($table, $field, '<', $value);
-        }else if ($searchOption == 'lte') {
-            $query->where($table, $field, '<=', $value);
-        }else if ($searchOption == 'gt') {
-            $query->where($table, $field, '>', $value);
-        }else if ($searchOption == 'gte') {
-            $query->where($table, $field, '>=', $value);
-        }else if ($searchOption == 'tru') {
-            $query->where($table, $field, '=', 1);
-        }else if ($searchOption == 'fls') {
-            $query->where($table, $field, '=', 0);
-        }else {
-            $query->where($table, $field, '=', $value);
-        }   
-    
-    
-    }
-	
-	
 ?>
\ No newline at end of file
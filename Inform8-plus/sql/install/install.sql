@@ -76,14 +76,16 @@ ALTER TABLE `User` ADD CONSTRAINT FOREIGN KEY (`LanguageId`) REFERENCES `Languag
 --        Record History Storage 
 --  ======================================
 CREATE TABLE  `History` (
-  `HistoryId` SMALLINT NOT NULL auto_increment,
+  `HistoryId` BIGINT UNSIGNED NOT NULL auto_increment,
   `TableName` varchar(255) NOT NULL,
   `RecordId` BIGINT NOT NULL,
   `Json` LONGTEXT NOT NULL,
   `Created` TIMESTAMP,
   `ModifiedBy` BIGINT,	
   `ModifiedByName` varchar(255),
-  PRIMARY KEY  (`HistoryId`)
+  PRIMARY KEY  (`HistoryId`),
+  KEY `TableRecord` (`TableName`, `RecordId`),
+  KEY `TableCreated` (`TableName`, `Created`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
 ALTER TABLE `History` ADD CONSTRAINT FOREIGN KEY (`ModifiedBy`) REFERENCES `User` (`UserId`) ON DELETE SET NULL ON UPDATE CASCADE;
@@ -0,0 +1,483 @@
+/* 
+ * Copyright 2011 - Inform8
+ * http://www.inform8.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+package com.eighty8.inform8;
+
+import java.io.File;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.eighty8.inform8.config.Config;
+import com.eighty8.inform8.db.table.Inform8Table;
+import com.eighty8.inform8.file.FileManager;
+import com.eighty8.inform8.file.GeneratedFileWriter;
+import com.eighty8.inform8.manifest.Fingerprints;
+import com.eighty8.inform8.manifest.GenerationManifest;
+import com.eighty8.inform8.profile.GenerationProfiler;
+import com.eighty8.inform8.profile.GenerationProfiler.Span;
+import com.eighty8.inform8.shard.Shard;
+import com.eighty8.inform8.velocity.TemplateRegistry;
+
+/**
+ * Responsible for the table specific code generation. Every table is merged with every table
+ * template (.tbl.vm), either one after another or spread over a pool of worker threads.
+ *
+ * @author ryanhenderson
+ */
+public class ClassGen {
+
+  static Logger LOG = Logger.getLogger(ClassGen.class);
+
+  /** The directory any output files are sent to */
+  private File outDir;
+
+  /** the configuration for the generation engine */
+  private final Config config;
+
+  /** The shared templating engine */
+  private final TemplateRegistry templates;
+
+  /** The file manager to access the local file system */
+  private FileManager fileManager;
+
+  /** The fingerprints of the previous run, null when generating every output */
+  private GenerationManifest manifest;
+
+  private GenerationProfiler profiler = GenerationProfiler.DISABLED;
+
+  /** The shard generated, null to generate every table */
+  private Shard shard;
+
+
+  /**
+   *
+   * @param outDir
+   * @param generatorConfig
+   * @throws Exception
+   */
+  public ClassGen(Config generatorConfig) throws Exception {
+    this(generatorConfig, new TemplateRegistry(generatorConfig.getAllProperties()));
+  }
+
+
+  /**
+   *
+   * @param generatorConfig
+   * @param templates
+   *          the templating engine, shared with the other generators
+   */
+  public ClassGen(Config generatorConfig, TemplateRegistry templates) {
+    this.config = generatorConfig;
+    this.outDir = new File(generatorConfig.getGenFolder());
+    this.templates = templates;
+
+    fileManager = new FileManager(generatorConfig);
+  }
+
+
+  /**
+   * Simplified Generation section, generating for a few files...
+   *
+   * @param table
+   *          the table to generate for
+   * @param extras
+   *          additional objects made available to the templates
+   * @throws Exception
+   *           Any exceptions raised during the merge process or IO errors
+   */
+  public void gen(Inform8Table table, HashMap<String, Object> extras) throws Exception {
+    for (TableTemplate template : getTableTemplates()) {
+      generate(table, template, extras);
+    }
+  }
+
+
+  /**
+   * Generates all tables against all table templates.
+   *
+   * With more than one thread every table/template merge is queued on a bounded worker pool.
+   * Merges that write to the same output file are kept together, in table order, so the
+   * output is identical to a serial run.
+   *
+   * When a manifest is set, outputs whose table, template and config fingerprints match the
+   * previous run are kept as they are. When a shard is set, only its outputs are generated.
+   *
+   * @param tables
+   *          the tables to generate for
+   * @param extras
+   *          additional objects made available to the templates, read only during generation
+   * @param threads
+   *          the number of worker threads, 1 or less generates on the calling thread
+   * @throws Exception
+   *           Any exceptions raised during the merge process or IO errors
+   */
+  public void gen(List<Inform8Table> tables, final HashMap<String, Object> extras, int threads) throws Exception {
+    long start = System.nanoTime();
+    Map<File, OutputFile> outputs = getOutputs(tables, shard);
+
+    List<OutputFile> pending = new ArrayList<OutputFile>();
+    if (manifest == null) {
+      pending.addAll(outputs.values());
+    } else {
+      Fingerprints fingerprints = new Fingerprints(tables, config.getAllProperties());
+      for (OutputFile output : outputs.values()) {
+        List<String> inputs = new ArrayList<String>();
+        inputs.add(fingerprints.getConfigFingerprint());
+        for (TableMerge merge : output.merges) {
+          inputs.add(fingerprints.getTemplateFingerprint(merge.template.getTemplate()));
+          inputs.add(fingerprints.getTableFingerprint(merge.table));
+        }
+        output.fingerprint = Fingerprints.combine(inputs);
+        if (manifest.isCurrent(output.file, output.fingerprint)) {
+          manifest.skipped(output.file, output.fingerprint);
+        } else {
+          pending.add(output);
+        }
+      }
+    }
+
+    if (threads <= 1) {
+      for (OutputFile output : pending) {
+        generate(output, extras);
+      }
+      LOG.info("Table Generation: " + pending.size() + " of " + outputs.size() + " outputs in " + toMillis(System.nanoTime() - start) + "ms (serial)"
+          + (shard == null ? "" : " for shard " + shard));
+      return;
+    }
+
+    final Map<String, WorkerStats> workerStats = new ConcurrentHashMap<String, WorkerStats>();
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new WorkerThreadFactory("ClassGen-worker-"));
+    try {
+      List<Future<Object>> results = new ArrayList<Future<Object>>();
+      for (final OutputFile output : pending) {
+        results.add(executor.submit(new Callable<Object>() {
+          @Override
+          public Object call() throws Exception {
+            long busyStart = System.nanoTime();
+            generate(output, extras);
+            statsFor(workerStats, Thread.currentThread().getName()).record(output.merges.size(), System.nanoTime() - busyStart);
+            return null;
+          }
+        }));
+      }
+      for (Future<Object> result : results) {
+        try {
+          result.get();
+        } catch (ExecutionException e) {
+          LOG.error("Table Generation Error");
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw new RuntimeException(e.getCause());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    long wall = System.nanoTime() - start;
+    LOG.info("Table Generation: " + pending.size() + " of " + outputs.size() + " outputs in " + toMillis(wall) + "ms on " + threads + " threads"
+        + (shard == null ? "" : " for shard " + shard));
+    for (Map.Entry<String, WorkerStats> entry : workerStats.entrySet()) {
+      WorkerStats stats = entry.getValue();
+      LOG.info("  " + entry.getKey() + ": " + stats.merges.get() + " merges, busy " + toMillis(stats.busy.get()) + "ms ("
+          + (wall > 0 ? stats.busy.get() * 100 / wall : 0) + "% utilised)");
+    }
+  }
+
+
+  /**
+   * Records the fingerprint of every output in the manifest, and skips outputs that are unchanged
+   * since the manifest was written.
+   *
+   * @param manifest
+   *          the manifest, null to always generate every output
+   */
+  public void setManifest(GenerationManifest manifest) {
+    this.manifest = manifest;
+  }
+
+
+  /**
+   * @param profiler
+   *          times every merge, GenerationProfiler.DISABLED by default
+   */
+  public void setProfiler(GenerationProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+
+  /**
+   * Generates only the outputs of the shard's tables.
+   *
+   * @param shard
+   *          the shard, null to generate every table
+   */
+  public void setShard(Shard shard) {
+    this.shard = shard;
+  }
+
+
+  /**
+   * The table outputs generated for the tables.
+   *
+   * @param shard
+   *          only the outputs of this shard, null for all
+   * @return the output files in generation order
+   */
+  public List<File> getOutputFiles(List<Inform8Table> tables, Shard shard) {
+    return new ArrayList<File>(getOutputs(tables, shard).keySet());
+  }
+
+
+  /**
+   * Groups the merges by output file, a later table overwrites an earlier one in a serial run.
+   * An output written by several tables belongs to the shard of its first table, so it is
+   * generated whole by one shard.
+   */
+  private Map<File, OutputFile> getOutputs(List<Inform8Table> tables, Shard shard) {
+    List<TableTemplate> tableTemplates = getTableTemplates();
+    Map<File, OutputFile> outputs = new LinkedHashMap<File, OutputFile>();
+    Set<File> otherShards = new HashSet<File>();
+    for (Inform8Table table : tables) {
+      for (TableTemplate template : tableTemplates) {
+        File outFile = new File(template.getOutDir(), template.getOutputName(table));
+        OutputFile output = outputs.get(outFile);
+        if (output == null) {
+          if (otherShards.contains(outFile)) {
+            continue;
+          }
+          if (shard != null && !shard.owns(table)) {
+            otherShards.add(outFile);
+            continue;
+          }
+          output = new OutputFile(outFile);
+          outputs.put(outFile, output);
+        }
+        output.merges.add(new TableMerge(table, template));
+      }
+    }
+    return outputs;
+  }
+
+
+  /**
+   * Finds all table templates, creating the output folders they will be written to.
+   *
+   * @return the table templates in generation order
+   */
+  private List<TableTemplate> getTableTemplates() {
+    List<TableTemplate> templates = new ArrayList<TableTemplate>();
+
+    String[] tableTemplates = fileManager.getAllTemplates(".", config.getTableExtensions());
+    for (String templateName : tableTemplates) {
+      templates.add(new TableTemplate(templateName, outDir, templateName.replace(".tbl.vm", ""), false));
+    }
+
+    List<String> folders = fileManager.getFolders();
+    for (String file : folders) {
+      tableTemplates = fileManager.getAllTemplates(file, config.getTableExtensions());
+      if (tableTemplates.length > 0) {
+        File tempdir = new File(outDir, file);
+        tempdir.mkdirs();
+        for (String templateName : tableTemplates) {
+          templates.add(new TableTemplate(file + File.separator + templateName, tempdir, templateName.replace(".tbl.vm", ""), true));
+        }
+      }
+    }
+    return templates;
+  }
+
+
+  private void generate(OutputFile output, HashMap<String, Object> extras) throws Exception {
+    for (TableMerge merge : output.merges) {
+      generate(merge.table, merge.template, extras);
+    }
+    if (manifest != null) {
+      manifest.generated(output.file, output.fingerprint);
+    }
+  }
+
+
+  private void generate(Inform8Table table, TableTemplate template, HashMap<String, Object> extras) throws Exception {
+    Span span = profiler.start("table", template.getTemplate(), table.getName());
+    GeneratedFileWriter out = new GeneratedFileWriter(template.getOutDir(), template.getOutputName(table));
+    try {
+      merge(table, template.getTemplate(), extras, out);
+      span.merged();
+      out.close();
+      span.end(out.getSize());
+    } finally {
+      out.discard();
+    }
+  }
+
+
+  /**
+   * Merges a single table with a table template.
+   *
+   * @param t
+   * @param template
+   * @param extras
+   * @param out
+   *          receives the merged output
+   * @throws Exception
+   */
+  public void merge(Inform8Table t, String template, HashMap<String, Object> extras, Writer out) throws Exception {
+    LOG.trace("Merging table " + t.getName() + " with template " + template);
+
+    HashMap<String, Object> data = new HashMap<String, Object>();
+    data.put("table", t); // the current table
+    data.put("ds", "$"); //dollar sign
+    data.put("config", config); // all config
+    if (extras != null) {
+      data.putAll(extras);
+    }
+
+    templates.merge(template, data, out);
+  }
+
+
+  private static WorkerStats statsFor(Map<String, WorkerStats> workerStats, String worker) {
+    WorkerStats stats = workerStats.get(worker);
+    if (stats == null) {
+      stats = new WorkerStats();
+      workerStats.put(worker, stats);
+    }
+    return stats;
+  }
+
+
+  private static long toMillis(long nanos) {
+    return nanos / 1000000L;
+  }
+
+
+  /**
+   * A table template and where its output is written.
+   */
+  private static class TableTemplate {
+
+    private final String template;
+    private final File outDir;
+    private final String outputName;
+    private final boolean tablePrefixed;
+
+
+    TableTemplate(String template, File outDir, String outputName, boolean tablePrefixed) {
+      this.template = template;
+      this.outDir = outDir;
+      this.outputName = outputName;
+      this.tablePrefixed = tablePrefixed;
+    }
+
+
+    String getTemplate() {
+      return template;
+    }
+
+
+    File getOutDir() {
+      return outDir;
+    }
+
+
+    String getOutputName(Inform8Table table) {
+      return tablePrefixed ? table.getName() + outputName : outputName;
+    }
+  }
+
+
+  /**
+   * A single table/template merge.
+   */
+  private static class TableMerge {
+
+    final Inform8Table table;
+    final TableTemplate template;
+
+
+    TableMerge(Inform8Table table, TableTemplate template) {
+      this.table = table;
+      this.template = template;
+    }
+  }
+
+
+  /**
+   * A generated file and the merges, in order, that write it.
+   */
+  private static class OutputFile {
+
+    final File file;
+    final List<TableMerge> merges = new ArrayList<TableMerge>();
+    String fingerprint;
+
+
+    OutputFile(File file) {
+      this.file = file;
+    }
+  }
+
+
+  /**
+   * Merge count and busy time of a single worker thread. Only ever updated by its own worker.
+   */
+  private static class WorkerStats {
+
+    final AtomicInteger merges = new AtomicInteger();
+    final AtomicLong busy = new AtomicLong();
+
+
+    void record(int mergeCount, long busyNanos) {
+      merges.addAndGet(mergeCount);
+      busy.addAndGet(busyNanos);
+    }
+  }
+
+
+  /**
+   * Daemon worker threads, named with the prefix and a count.
+   */
+  static class WorkerThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+
+    private final AtomicInteger count = new AtomicInteger();
+
+
+    WorkerThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, prefix + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+}
@@ -0,0 +1,169 @@
+/* 
+ * Copyright 2011 - Inform8
+ * http://www.inform8.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * http://www.apache.org/licenses/LICENSE-2.0
+ */
+package com.eighty8.inform8;
+
+import java.io.File;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.eighty8.inform8.config.Config;
+import com.eighty8.inform8.db.table.Inform8Table;
+import com.eighty8.inform8.file.FileManager;
+import com.eighty8.inform8.file.GeneratedFileWriter;
+import com.eighty8.inform8.profile.GenerationProfiler;
+import com.eighty8.inform8.profile.GenerationProfiler.Span;
+import com.eighty8.inform8.velocity.TemplateRegistry;
+
+/**
+ * Responsible for the general code generation. Non table specific generation.
+ * 
+ * @author ryanhenderson
+ * 
+ */
+public class Gen {
+
+  static Logger LOG = Logger.getLogger(Gen.class);
+
+  private final Config config;
+
+  private final TemplateRegistry templates;
+
+  private FileManager fileManager;
+
+  private File outDir;
+
+  private GenerationProfiler profiler = GenerationProfiler.DISABLED;
+
+
+  /**
+   * 
+   * @param outDir
+   * @param generatorConfig
+   * @throws Exception
+   */
+  public Gen(Config generatorConfig) throws Exception {
+    this(generatorConfig, new TemplateRegistry(generatorConfig.getAllProperties()));
+  }
+
+
+  /**
+   * 
+   * @param generatorConfig
+   * @param templates
+   *          the templating engine, shared with the other generators
+   */
+  public Gen(Config generatorConfig, TemplateRegistry templates) {
+    this.config = generatorConfig;
+    this.outDir = new File(generatorConfig.getGenFolder());
+    this.templates = templates;
+
+    fileManager = new FileManager(generatorConfig);
+  }
+
+
+  /**
+   * @param profiler
+   *          times every merge, GenerationProfiler.DISABLED by default
+   */
+  public void setProfiler(GenerationProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+
+  /**
+   * Simplified Generation section, generating for a few files...
+   * 
+   * @param tables
+   *          all tables
+   * @param extras
+   *          additional objects made available to the templates
+   * @throws Exception
+   *           Any exceptions raised during the merge process or IO errors
+   */
+  public void gen(List<Inform8Table> tables, HashMap<String, Object> extras) throws Exception {
+
+    String[] tableTemplates = fileManager.getAllTemplates(".", config.getGenericExtensions());
+    if (tableTemplates.length > 0) {
+      for (String templateName : tableTemplates) {
+        merge(tables, templateName, extras, outDir, templateName.replace(".vm", ""));
+      }
+    }
+
+    List<String> folders = fileManager.getFolders();
+    try {
+      for (String file : folders) {
+        tableTemplates = fileManager.getAllTemplates(file, config.getGenericExtensions());
+        if (tableTemplates.length > 0) {
+          File tempdir = new File(outDir, file);
+          tempdir.mkdirs();
+          for (String templateName : tableTemplates) {
+            merge(tables, file + File.separator + templateName, extras, tempdir, templateName.replace(".vm", ""));
+          }
+        }
+      }
+    } catch (Exception e) {
+      LOG.error("General Generation Error");
+      throw new RuntimeException(e);
+    }
+  }
+
+
+  /**
+   * Merges the model with the template, streaming the output to the file.
+   * 
+   * @param tables
+   * @param template
+   * @param extras
+   * @param dir
+   *          the output folder
+   * @param name
+   *          the output file name
+   * @throws Exception
+   */
+  private void merge(List<Inform8Table> tables, String template, HashMap<String, Object> extras, File dir, String name) throws Exception {
+    Span span = profiler.start("general", template, null);
+    GeneratedFileWriter out = new GeneratedFileWriter(dir, name);
+    try {
+      merge(tables, template, extras, out);
+      span.merged();
+      out.close();
+      span.end(out.getSize());
+    } finally {
+      out.discard();
+    }
+  }
+
+
+  /**
+   * Merges the model with a general template.
+   * 
+   * @param tables
+   * @param template
+   * @param extras
+   * @param out
+   *          receives the merged output
+   * @throws Exception
+   */
+  public void merge(List<Inform8Table> tables, String template, HashMap<String, Object> extras, Writer out) throws Exception {
+    LOG.trace("Merging model with template " + template);
+    
+    HashMap<String, Object> data = new HashMap<String, Object>();
+    data.put("tables", tables); // all tables
+    data.put("ds", "$");
+    data.put("config", config);
+    if (extras != null) {
+      data.putAll(extras);
+    }
+
+    templates.merge(template, data, out);
+  }
+
+}
\ No newline at end of file
@@ -8,11 +8,12 @@
 package com.eighty8.inform8;
 
 import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
 import org.apache.log4j.Logger;
-import org.apache.velocity.app.VelocityEngine;
 
 import com.eighty8.inform8.config.PlusGeneratorConfig;
 import com.eighty8.inform8.config.TableAndColumnAndLabel;
@@ -20,14 +21,27 @@ import com.eighty8.inform8.config.TableColumnProperty;
 import com.eighty8.inform8.config.TableLabel;
 import com.eighty8.inform8.config.TableProperty;
 import com.eighty8.inform8.db.DbConnection;
+import com.eighty8.inform8.db.ddl.DdlModelBuilder;
 import com.eighty8.inform8.db.model.DatabaseModel;
 import com.eighty8.inform8.db.model.ModelBuilder;
+import com.eighty8.inform8.db.model.ModelIndex;
+import com.eighty8.inform8.db.mysql.MysqlBulkModelBuilder;
 import com.eighty8.inform8.db.mysql.MysqlConnection;
 import com.eighty8.inform8.db.mysql.MysqlModelBuilder;
 import com.eighty8.inform8.db.table.Inform8Table;
 import com.eighty8.inform8.displaysettings.Label;
+import com.eighty8.inform8.manifest.Fingerprints;
+import com.eighty8.inform8.manifest.GenerationManifest;
 import com.eighty8.inform8.menu.Menu;
-import com.eighty8.inform8.velocity.DummyLogger;
+import com.eighty8.inform8.profile.GenerationProfiler;
+import com.eighty8.inform8.profile.GenerationProfiler.Span;
+import com.eighty8.inform8.profile.ProfileReport;
+import com.eighty8.inform8.render.RenderPlanCache;
+import com.eighty8.inform8.shard.Shard;
+import com.eighty8.inform8.shard.ShardRecord;
+import com.eighty8.inform8.shard.ShardVerifier;
+import com.eighty8.inform8.velocity.TemplateRegistry;
+import com.eighty8.inform8.watch.FileWatcher;
 
 /**
  * Launches the code generation process using the PHP Community Edition of Inform8
@@ -38,14 +52,22 @@ public class Inform8 {
 
   static Logger LOG = Logger.getLogger(Inform8.class);
 
+  private final String configFile;
+
   /** The config used to perform the generation */
   private PlusGeneratorConfig generatorConfig;
 
-  /** The Velocity engine used to parse the templates */
-  private VelocityEngine velocityEngine;
+  /** The Velocity engine and parsed templates, shared by all generators */
+  private TemplateRegistry templates;
+
+  /** The model, with the config applied */
+  private List<Inform8Table> tables;
 
   private Menu siteMenu;
 
+  /** The shard generated by this process, null when generating everything */
+  private Shard shard;
+
 
   /**
    * 
@@ -54,26 +76,33 @@ public class Inform8 {
    */
   public Inform8(String configFile) throws Exception {
     LOG.info("Configuration File: " + configFile);
+    this.configFile = configFile;
 
-    GenerationContext.getInstance().setConfigPath(configFile);
-    GenerationContext.getInstance().setConfig(generatorConfig = new PlusGeneratorConfig(new File(configFile)));
-    LOG.trace("Configuration Loaded");
+    loadConfig();
 
-    velocityEngine = new VelocityEngine(generatorConfig.getAllProperties());
-    velocityEngine.setProperty(VelocityEngine.RUNTIME_LOG_LOGSYSTEM, new DummyLogger());
-    velocityEngine.init();
-    LOG.trace("Velocity Loaded");
+    templates = new TemplateRegistry(generatorConfig.getAllProperties());
 
     GenerationContext.getInstance().setRefDbConnection(loadConnection());
   }
 
 
+  private void loadConfig() {
+    GenerationContext.getInstance().setConfigPath(configFile);
+    GenerationContext.getInstance().setConfig(generatorConfig = new PlusGeneratorConfig(new File(configFile)));
+    LOG.trace("Configuration Loaded");
+  }
+
+
   /**
    * Loads the database connection ready for use.
    * 
-   * @return the database connection or null if the server type is not supported.
+   * @return the database connection or null if the model is read from a schema file or the server
+   *         type is not supported.
    */
   private DbConnection loadConnection() {
+    if (generatorConfig.getSchemaFile() != null) {
+      return null;
+    }
     if (GenerationContext.getInstance().getDatabaseType().equalsIgnoreCase("mysql")) {
       return new MysqlConnection();
     }
@@ -82,12 +111,19 @@ public class Inform8 {
 
 
   /**
-   * Loads the appropriate model parser depending on the server type.
+   * Loads the appropriate model parser depending on the server type, or a DDL parser when the
+   * model is read from a schema file.
    * 
    * @return The model parser or null if the db server type is not supported.
    */
   private ModelBuilder getDbModelParser() {
+    if (generatorConfig.getSchemaFile() != null) {
+      return new DdlModelBuilder(new File(generatorConfig.getSchemaFile()));
+    }
     if (GenerationContext.getInstance().getDatabaseType().equalsIgnoreCase("mysql")) {
+      if (generatorConfig.isBulkModelExtraction()) {
+        return new MysqlBulkModelBuilder(generatorConfig.getAllProperties(), generatorConfig.getModelPoolSize());
+      }
       return new MysqlModelBuilder(GenerationContext.getInstance().getRefDbConnection());
     }
     return null;
@@ -102,40 +138,51 @@ public class Inform8 {
    */
   private void generate() throws Exception {
     LOG.debug("Generation Started");
+    loadModel();
+    generateOutputs(generatorConfig.isIncrementalGeneration());
+  }
 
+
+  /**
+   * Extracts the model and applies the labels, properties and menus of the config to it.
+   */
+  private void loadModel() throws Exception {
+    // the plans hold the tables of the model before
+    RenderPlanCache.getInstance().clear();
     ModelBuilder dbModelParser = getDbModelParser();
     DatabaseModel model = dbModelParser.extractModel();
     LOG.debug("Model Parsed");
 
-    List<Inform8Table> tables = model.getTables();
+    tables = model.getTables();
+    ModelIndex index = new ModelIndex(tables);
+    checkConfig(index);
 
     List<TableAndColumnAndLabel> tableFieldLabels = generatorConfig.getTableFieldLabels();
     for (TableAndColumnAndLabel tcl : tableFieldLabels) {
       if (tcl.getLabel().equals(Label.HIDDEN.toString())) {
         LOG.debug("Removing column: " + tcl.getColumn());
-        Inform8Table tempTable = findTable(tcl.getTable(), tables);
-        tempTable.removeColumn(tempTable.getColumn(tcl.getColumn()));
+        index.removeColumn(tcl.getTable(), tcl.getColumn());
       }else {
-        findTable(tcl.getTable(), tables).getColumn(tcl.getColumn()).getSettings().addLabel(tcl.getLabel());
+        index.getColumn(tcl.getTable(), tcl.getColumn()).getSettings().addLabel(tcl.getLabel());
       }
     }
     LOG.debug("Table Column Labels Applied");
 
     List<TableColumnProperty> tableFieldProps = generatorConfig.getTableFieldProperties();
     for (TableColumnProperty prop : tableFieldProps) {
-      findTable(prop.getTable(), tables).getColumn(prop.getColumn()).getSettings().addProperty(prop.getLabel(), prop.getProperty());
+      index.getColumn(prop.getTable(), prop.getColumn()).getSettings().addProperty(prop.getLabel(), prop.getProperty());
     }
     LOG.debug("Table Column Properties Applied");
 
     List<TableLabel> tableLabels = generatorConfig.getTableLabels();
     for (TableLabel tl : tableLabels) {
-      findTable(tl.getTable(), tables).getSettings().addLabel(tl.getLabel());  
+      index.getTable(tl.getTable()).getSettings().addLabel(tl.getLabel());  
     }
     LOG.debug("Table Labels Applied");
 
     List<TableProperty> tableProps = generatorConfig.getTableProperties();
     for (TableProperty tp : tableProps) {
-      findTable(tp.getTable(), tables).getSettings().addProperty(tp.getKey(), tp.getValue());
+      index.getTable(tp.getTable()).getSettings().addProperty(tp.getKey(), tp.getValue());
     }
     LOG.debug("Table Properties Applied");
 
@@ -143,53 +190,252 @@ public class Inform8 {
     siteMenu.merge(tables, generatorConfig);
     siteMenu.order(generatorConfig.getMenusInOrder());
     System.out.println("Menu -------------------> " + siteMenu);
+  }
 
+
+  /**
+   * Generates all outputs from the loaded model.
+   * 
+   * @param incremental
+   *          true to only generate the table outputs whose inputs changed since the last run
+   */
+  private void generateOutputs(boolean incremental) throws Exception {
     HashMap<String, Object> extras = new HashMap<String, Object>();
     extras.put("siteMenu", siteMenu);
+    extras.put("renderPlans", RenderPlanCache.getInstance());
     
-    LangGen langGen = new LangGen(generatorConfig);
-    langGen.gen(tables, extras, siteMenu);
+    File genFolder = new File(generatorConfig.getGenFolder());
+    boolean coordinator = shard == null || shard.isCoordinator();
+    ShardRecord record = null;
+    if (shard != null) {
+      record = new ShardRecord(genFolder, shard);
+      record.clear();
+    }
     
-    LOG.debug("Table Specific Generation Starting ");
-    ClassGen classGen = new ClassGen(generatorConfig);
-    for (Inform8Table table : tables) {
-      LOG.debug("Table Generation Starting - " + table.getName());
-      classGen.gen(table, extras);
+    GenerationProfiler profiler = generatorConfig.isProfiling() ? new GenerationProfiler() : GenerationProfiler.DISABLED;
+    Span phase;
+    
+    // the language and general outputs are only generated by the coordinator shard. The table
+    // templates do not use the language entries, and building them writes lang/jackentries.txt
+    if (coordinator) {
+      phase = profiler.start(GenerationProfiler.PHASE, "LangGen", null);
+      LangGen langGen = new LangGen(generatorConfig, templates);
+      langGen.setProfiler(profiler);
+      langGen.setSplitTables(generatorConfig.isLanguageSplit());
+      langGen.gen(tables, extras, siteMenu, generatorConfig.getGenerationThreads());
+      phase.end(-1);
     }
+    
+    GenerationManifest manifest = null;
+    if (incremental) {
+      manifest = new GenerationManifest(genFolder, shard == null ? GenerationManifest.MANIFEST_FILE_NAME
+          : GenerationManifest.MANIFEST_FILE_NAME + "-" + shard);
+    }
+
+    LOG.debug("Table Specific Generation Starting ");
+    phase = profiler.start(GenerationProfiler.PHASE, "ClassGen", null);
+    ClassGen classGen = new ClassGen(generatorConfig, templates);
+    classGen.setManifest(manifest);
+    classGen.setProfiler(profiler);
+    classGen.setShard(shard);
+    classGen.gen(tables, extras, generatorConfig.getGenerationThreads());
+    phase.end(-1);
     LOG.debug("Table Specific Generation Complete");
 
-    LOG.debug("General Generation Starting");
-    new Gen(generatorConfig).gen(tables, extras);
-    LOG.debug("General Generation Complete");    
+    if (coordinator) {
+      LOG.debug("General Generation Starting");
+      phase = profiler.start(GenerationProfiler.PHASE, "Gen", null);
+      Gen gen = new Gen(generatorConfig, templates);
+      gen.setProfiler(profiler);
+      gen.gen(tables, extras);
+      phase.end(-1);
+      LOG.debug("General Generation Complete");    
+    }
+
+    if (manifest != null) {
+      LOG.debug("Removed " + manifest.removeOrphans().size() + " orphaned outputs");
+      manifest.save();
+    }
+
+    templates.logMetrics();
+
+    if (profiler.isEnabled()) {
+      File profileFolder = new File(generatorConfig.getProfileFolder());
+      new ProfileReport(profiler).write(shard == null ? profileFolder : new File(profileFolder, "shard-" + shard), generatorConfig.isProfileTrace());
+    }
+
+    if (record != null) {
+      record.setModel(new Fingerprints(tables, generatorConfig.getAllProperties()).getModelFingerprint());
+      for (File output : classGen.getOutputFiles(tables, shard)) {
+        record.addOutput(output);
+      }
+      if (shard.isCoordinator()) {
+        for (File output : classGen.getOutputFiles(tables, null)) {
+          record.addExpected(output);
+        }
+      }
+      record.save();
+      LOG.info("Shard " + shard + " finished, " + record.getOutputs().size() + " table outputs");
+    }
+  }
+
+
+  /**
+   * Generates, then keeps the config, templates and model loaded and regenerates whenever the
+   * templates, the config, the lang files or the schema file change. Runs until the process is
+   * stopped.
+   * 
+   * Template changes reparse the templates, lang changes only regenerate, schema changes reload
+   * the model and config changes reload everything. The table outputs are generated
+   * incrementally, so only those affected by a change are rewritten.
+   * 
+   * @throws Exception
+   *           if the first generation fails, later failures are logged and watching continues
+   */
+  private void watch() throws Exception {
+    LOG.debug("Generation Started");
+    loadModel();
+    generateOutputs(true);
+
+    FileWatcher watcher = null;
+    boolean failed = false;
+    while (true) {
+      final File langFolder = new File(GenerationContext.getInstance().getConfigFolder(), "lang").getAbsoluteFile();
+      File config = new File(configFile).getAbsoluteFile();
+      File sqlFile = generatorConfig.getWatchSqlFile() == null ? null : new File(generatorConfig.getWatchSqlFile()).getAbsoluteFile();
+
+      if (watcher == null) {
+        List<File> roots = new ArrayList<File>();
+        for (String path : generatorConfig.getAllProperties().getProperty("file.resource.loader.path", "").split(",")) {
+          if (path.trim().length() > 0) {
+            roots.add(new File(path.trim()).getAbsoluteFile());
+          }
+        }
+        roots.add(config);
+        roots.add(langFolder);
+        if (sqlFile != null) {
+          roots.add(sqlFile);
+        }
+        // the lang folder also holds files written by generation, only the languages are inputs
+        watcher = new FileWatcher(roots, generatorConfig.getWatchPollMillis(), generatorConfig.getWatchQuietMillis(), new FileFilter() {
+          @Override
+          public boolean accept(File file) {
+            return !file.getParentFile().equals(langFolder) || file.getName().endsWith(".properties");
+          }
+        });
+        LOG.info("Watching for changes: " + roots);
+      }
+
+      List<File> changed = watcher.awaitChanges();
+      long start = System.nanoTime();
+
+      // after a failure the config and model may be half loaded, so reload everything
+      boolean configChanged = failed;
+      boolean sqlChanged = false;
+      boolean langChanged = false;
+      boolean templatesChanged = false;
+      for (File file : changed) {
+        if (file.equals(config)) {
+          configChanged = true;
+        } else if (file.equals(sqlFile)) {
+          sqlChanged = true;
+        } else if (file.getParentFile().equals(langFolder)) {
+          langChanged = true;
+        } else {
+          templatesChanged = true;
+        }
+      }
+      LOG.info("Changed: " + changed);
+
+      try {
+        if (configChanged) {
+          loadConfig();
+          templates = new TemplateRegistry(generatorConfig.getAllProperties());
+          loadModel();
+          // the template folders or schema file may have moved
+          watcher = null;
+        } else {
+          if (sqlChanged) {
+            // the menus are built into the config, so start from a fresh one
+            loadConfig();
+            loadModel();
+          }
+          if (templatesChanged) {
+            templates.reload();
+          }
+        }
+        // the table outputs may use the language properties, which are not fingerprinted
+        generateOutputs(!langChanged);
+        LOG.info("Regenerated in " + ((System.nanoTime() - start) / 1000000L) + "ms after " + changed.size() + " changed files");
+        failed = false;
+      } catch (Exception e) {
+        failed = true;
+        LOG.error("Generation failed, waiting for the next change", e);
+      }
+    }
   }
   
 
   /**
+   * Checks every table and column named by the label and property config exists in the model,
+   * reporting all that do not before any are applied.
    * 
-   * @param name
-   * @param tables
-   * @return
+   * @param index
+   *          the model
+   * @throws IllegalStateException
+   *           listing the unknown tables and columns
    */
-  public Inform8Table findTable(String name, List<Inform8Table> tables) {
-    for (Inform8Table table : tables) {
-      if (table.getName().equalsIgnoreCase(name)) {
-        return table;
+  private void checkConfig(ModelIndex index) {
+    List<String> errors = new ArrayList<String>();
+    for (TableAndColumnAndLabel tcl : generatorConfig.getTableFieldLabels()) {
+      index.check("field label " + tcl.getTable() + "." + tcl.getColumn(), tcl.getTable(), tcl.getColumn(), errors);
+    }
+    for (TableColumnProperty prop : generatorConfig.getTableFieldProperties()) {
+      index.check("field property " + prop.getTable() + "." + prop.getColumn(), prop.getTable(), prop.getColumn(), errors);
+    }
+    for (TableLabel tl : generatorConfig.getTableLabels()) {
+      index.check("table label " + tl.getTable(), tl.getTable(), null, errors);
+    }
+    for (TableProperty tp : generatorConfig.getTableProperties()) {
+      index.check("table property " + tp.getTable(), tp.getTable(), null, errors);
+    }
+    if (!errors.isEmpty()) {
+      StringBuilder message = new StringBuilder("The generation config refers to tables or columns not in the model:");
+      for (String error : errors) {
+        message.append("\n  ").append(error);
+        LOG.error(error);
       }
+      throw new IllegalStateException(message.toString());
     }
-    return null;
   }
 
 
   /**
    * 
    * @param args
+   *          the configuration file, optionally followed by:
+   *          -watch to keep regenerating as the inputs change,
+   *          -shard index/count to generate one shard of a sharded run, for example -shard 0/4,
+   *          -verify count to check the output of a sharded run is complete once all have finished
    */
   public static void main(String[] args) {
     if (args.length < 1) {
       System.out.println("Configuration file name argument missing.");
     }
     try {
-      new Inform8(args[0]).generate();
+      if (args.length > 1 && args[1].equalsIgnoreCase("-watch")) {
+        new Inform8(args[0]).watch();
+      } else if (args.length > 2 && args[1].equalsIgnoreCase("-shard")) {
+        Inform8 inform8 = new Inform8(args[0]);
+        inform8.shard = Shard.parse(args[2]);
+        inform8.generate();
+      } else if (args.length > 2 && args[1].equalsIgnoreCase("-verify")) {
+        // only reads the output, no model or connection needed
+        PlusGeneratorConfig config = new PlusGeneratorConfig(new File(args[0]));
+        new ShardVerifier(new File(config.getGenFolder()), Integer.parseInt(args[2].trim())).check();
+      } else {
+        new Inform8(args[0]).generate();
+      }
     } catch (Exception e) {
       LOG.error("Generation failed", e);
       throw new RuntimeException(e);
@@ -8,26 +8,39 @@
 package com.eighty8.inform8;
 
 import java.io.File;
-import java.io.StringWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
-import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
-import org.apache.velocity.Template;
-import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
 
 import com.eighty8.inform8.config.Config;
 import com.eighty8.inform8.db.table.Inform8Table;
 import com.eighty8.inform8.file.FileManager;
+import com.eighty8.inform8.file.GeneratedFileWriter;
 import com.eighty8.inform8.lang.LanguageGenerator;
+import com.eighty8.inform8.lang.LanguageProperties;
 import com.eighty8.inform8.menu.Menu;
-import com.eighty8.inform8.util.FileUtils;
-import com.eighty8.inform8.velocity.DummyLogger;
+import com.eighty8.inform8.profile.GenerationProfiler;
+import com.eighty8.inform8.profile.GenerationProfiler.Span;
+import com.eighty8.inform8.velocity.TemplateRegistry;
 
 /**
  * Responsible for the general code generation. Non table specific generation.
@@ -39,14 +52,24 @@ public class LangGen {
 
   static Logger LOG = Logger.getLogger(LangGen.class);
 
+  /** language templates merged for each table, when split */
+  static final String TABLE_EXTENSION = ".tbl.lvm";
+
+  /** the hex digits of the content hash in the name of a language script */
+  private static final int HASH_LENGTH = 10;
+
   private final Config config;
 
-  private VelocityEngine velocityEngine;
+  private final TemplateRegistry templates;
 
   private FileManager fileManager;
 
   private File outDir;
 
+  private GenerationProfiler profiler = GenerationProfiler.DISABLED;
+
+  private boolean splitTables;
+
 
   /**
    * 
@@ -55,17 +78,44 @@ public class LangGen {
    * @throws Exception
    */
   public LangGen(Config generatorConfig) throws Exception {
+    this(generatorConfig, new TemplateRegistry(generatorConfig.getAllProperties()));
+  }
+
+
+  /**
+   * 
+   * @param generatorConfig
+   * @param templates
+   *          the templating engine, shared with the other generators
+   */
+  public LangGen(Config generatorConfig, TemplateRegistry templates) {
     this.config = generatorConfig;
     this.outDir = new File(generatorConfig.getGenFolder());
+    this.templates = templates;
 
     fileManager = new FileManager(generatorConfig);
+  }
 
-    velocityEngine = new VelocityEngine(generatorConfig.getAllProperties());
-    velocityEngine.setProperty(VelocityEngine.RUNTIME_LOG_LOGSYSTEM, new DummyLogger());
-    velocityEngine.init();
+
+  /**
+   * @param profiler
+   *          times every merge, GenerationProfiler.DISABLED by default
+   */
+  public void setProfiler(GenerationProfiler profiler) {
+    this.profiler = profiler;
   }
 
-  
+
+  /**
+   * @param splitTables
+   *          true to also merge the table language templates (.tbl.lvm), once for each table of
+   *          each language, to language/Table.php in their folder. False by default.
+   */
+  public void setSplitTables(boolean splitTables) {
+    this.splitTables = splitTables;
+  }
+
+
   /**
    * Simplified Generation section, generating for a few files...
    * @param siteMenu 
@@ -74,67 +124,306 @@ public class LangGen {
    *           Any exceptions raised during the merge process or IO errors
    */
   public void gen(List<Inform8Table> tables, HashMap<String, Object> extras, Menu siteMenu) throws Exception {
-    
+    gen(tables, extras, siteMenu, 1);
+  }
+
+
+  /**
+   * Generates every language template for every language.
+   * 
+   * Each language is merged with its own context, the shared objects plus its currentLanguage,
+   * so the languages are independent and with more than one thread the output files are written
+   * at the same time. Merges that write to the same file are kept together, in order, so the
+   * output is identical to a serial run.
+   * 
+   * The language properties and generator are left in the extras for the later generators.
+   * 
+   * @param siteMenu
+   * @param threads
+   *          the number of worker threads, 1 or less generates on the calling thread
+   * @throws Exception
+   *           Any exceptions raised during the merge process or IO errors
+   */
+  public void gen(List<Inform8Table> tables, HashMap<String, Object> extras, Menu siteMenu, int threads) throws Exception {
+    long start = System.nanoTime();
     LanguageGenerator langGenerator = new LanguageGenerator(tables, siteMenu, GenerationContext.getInstance().getConfigFolder());
-    Map<String, Properties> langGenProperties = langGenerator.getLanguageProperties();
+    Map<String, LanguageProperties> langGenProperties = langGenerator.getLanguageProperties();
+    
+    extras.put("langProps", langGenProperties);
+    extras.put("langGenerator", langGenerator);
+    
+    // every merge starts from this, it is never changed
+    HashMap<String, Object> data = new HashMap<String, Object>();
+    data.put("tables", tables); // all tables
+    data.put("ds", "$");
+    data.put("config", config);
+    data.putAll(extras);
+    Map<String, Object> shared = Collections.unmodifiableMap(data);
     
     ArrayList<String> list = new ArrayList<String>();
     list.add(".lvm");
+    ArrayList<String> tableList = new ArrayList<String>();
+    tableList.add(TABLE_EXTENSION);
     
-    
+    // group the merges by output file, a later template overwrites an earlier one in a serial run.
+    Map<File, LanguageOutput> outputs = new LinkedHashMap<File, LanguageOutput>();
     List<String> folders = fileManager.getFolders();
-    try {
-      for (String file : folders) {
-        String[] tableTemplates = fileManager.getAllTemplates(file, list);
-        if (tableTemplates.length > 0) {
-          File tempdir = new File(outDir, file);
-          tempdir.mkdirs();
-          for (String templateName : tableTemplates) {
-            Set<String> keySet = langGenProperties.keySet();
-            System.out.println("Generating Language Files for template: " + templateName);
-            for (String key : keySet) {
-              extras.put("currentLanguage", key);
-              extras.put("langProps", langGenProperties);
-              extras.put("langGenerator", langGenerator);
-              
-              String daMerge = merge(tables, file + File.separator + templateName, extras);
-              FileUtils.saveFile(daMerge, key + ".php", new File(outDir, file));
+    for (String file : folders) {
+      String[] tableTemplates = fileManager.getAllTemplates(file, list);
+      if (tableTemplates.length > 0) {
+        File tempdir = new File(outDir, file);
+        tempdir.mkdirs();
+        for (String templateName : tableTemplates) {
+          if (templateName.endsWith(TABLE_EXTENSION)) {
+            continue;
+          }
+          LOG.debug("Generating Language Files for template: " + templateName);
+          for (String key : langGenProperties.keySet()) {
+            addMerge(outputs, tempdir, key + getOutputExtension(templateName), new LanguageContext(file + File.separator + templateName, key,
+                null, shared));
+          }
+        }
+      }
+      
+      if (splitTables) {
+        for (String templateName : fileManager.getAllTemplates(file, tableList)) {
+          LOG.debug("Generating Table Language Files for template: " + templateName);
+          for (String key : langGenProperties.keySet()) {
+            File langDir = new File(new File(outDir, file), key);
+            langDir.mkdirs();
+            for (Inform8Table table : tables) {
+              addMerge(outputs, langDir, table.getName() + ".php", new LanguageContext(file + File.separator + templateName, key, table,
+                  shared));
             }
           }
         }
       }
+    }
+    
+    try {
+      if (threads <= 1) {
+        for (LanguageOutput output : outputs.values()) {
+          generate(output);
+        }
+      } else {
+        generate(outputs.values(), threads);
+      }
     } catch (Exception e) {
       LOG.error("General Generation Error");
       throw new RuntimeException(e);
     }
+    
+    extras.put("langPacks", addressScripts(outputs.values()));
+    
+    // as left by a serial run
+    Iterator<String> languages = langGenProperties.keySet().iterator();
+    String lastLanguage = null;
+    while (languages.hasNext()) {
+      lastLanguage = languages.next();
+    }
+    if (lastLanguage != null && !outputs.isEmpty()) {
+      extras.put("currentLanguage", lastLanguage);
+    }
+    
+    LOG.info("Language Generation: " + outputs.size() + " outputs for " + langGenProperties.size() + " languages in "
+        + ((System.nanoTime() - start) / 1000000L) + "ms" + (threads <= 1 ? " (serial)" : " on " + threads + " threads"));
+  }
+
+
+  /**
+   * @return the extension of the files a language template writes, the one before .lvm: .php for
+   *         langs.php.lvm, .js for pack.js.lvm
+   */
+  static String getOutputExtension(String templateName) {
+    String name = templateName.substring(0, templateName.length() - ".lvm".length());
+    int dot = name.lastIndexOf('.');
+    return dot < 0 ? ".php" : name.substring(dot);
+  }
+
+
+  /**
+   * Renames each language script, language.js, to language.hash.js after its content so it can be
+   * cached forever, removing the scripts of earlier runs. A script already at its name is left as
+   * it was.
+   * 
+   * @return the path of each language's script from the output folder, by language
+   */
+  private Map<String, String> addressScripts(Collection<LanguageOutput> outputs) throws IOException {
+    Map<String, String> packs = new TreeMap<String, String>();
+    for (LanguageOutput output : outputs) {
+      if (!output.name.endsWith(".js")) {
+        continue;
+      }
+      String language = output.merges.get(0).language;
+      File script = new File(output.dir, output.name);
+      String name = language + "." + hash(script) + ".js";
+      File addressed = new File(output.dir, name);
+      if (addressed.exists()) {
+        // same content, keep the earlier file and its time so it counts as unchanged
+        if (!script.delete()) {
+          throw new IOException("Unable to delete " + script);
+        }
+      } else if (!script.renameTo(addressed)) {
+        throw new IOException("Unable to rename " + script + " to " + addressed);
+      }
+      
+      String[] earlier = output.dir.list();
+      for (String other : earlier == null ? new String[0] : earlier) {
+        if (!other.equals(name) && other.matches(Pattern.quote(language) + "\\.[0-9a-f]{" + HASH_LENGTH + "}\\.js")) {
+          new File(output.dir, other).delete();
+        }
+      }
+      packs.put(language, outDir.toURI().relativize(addressed.toURI()).getPath());
+    }
+    return packs;
+  }
+
+
+  private static String hash(File file) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] buffer = new byte[16 * 1024];
+      for (int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+        digest.update(buffer, 0, read);
+      }
+    } finally {
+      in.close();
+    }
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.substring(0, HASH_LENGTH);
+  }
+
+
+  private static void addMerge(Map<File, LanguageOutput> outputs, File dir, String name, LanguageContext context) {
+    File outFile = new File(dir, name);
+    LanguageOutput output = outputs.get(outFile);
+    if (output == null) {
+      output = new LanguageOutput(dir, name);
+      outputs.put(outFile, output);
+    }
+    output.merges.add(context);
+  }
+
+
+  private void generate(Collection<LanguageOutput> outputs, int threads) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ClassGen.WorkerThreadFactory("LangGen-worker-"));
+    try {
+      List<Future<Object>> results = new ArrayList<Future<Object>>();
+      for (final LanguageOutput output : outputs) {
+        results.add(executor.submit(new Callable<Object>() {
+          @Override
+          public Object call() throws Exception {
+            generate(output);
+            return null;
+          }
+        }));
+      }
+      for (Future<Object> result : results) {
+        try {
+          result.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw new RuntimeException(e.getCause());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+
+  private void generate(LanguageOutput output) throws Exception {
+    for (LanguageContext context : output.merges) {
+      merge(context.template, context.language, context.newData(), output.dir, output.name);
+    }
   }
 
 
   /**
+   * Merges the data with the template, streaming the output to the file.
    * 
-   * @param tables
    * @param template
-   * @return
+   * @param language
+   * @param data
+   *          the template context, may be changed by the template
+   * @param dir
+   *          the output folder
+   * @param name
+   *          the output file name
    * @throws Exception
    */
-  private String merge(List<Inform8Table> tables, String template, HashMap<String, Object> extras) throws Exception {
+  private void merge(String template, String language, HashMap<String, Object> data, File dir, String name) throws Exception {
     LOG.trace("Merging model with template " + template);
     
-    HashMap<String, Object> data = new HashMap<String, Object>();
-    data.put("tables", tables); // all tables
-    data.put("ds", "$");
-    data.put("config", config);
-    if (extras!= null) {
-      data.putAll(extras);
+    Span span = profiler.start("language", template, language);
+    GeneratedFileWriter out = new GeneratedFileWriter(dir, name);
+    try {
+      templates.merge(template, data, out);
+      span.merged();
+      out.close();
+      span.end(out.getSize());
+    } finally {
+      out.discard();
     }
-    
-    VelocityContext vc = new VelocityContext(data);
-    StringWriter stringWriter = new StringWriter();
+  }
+
+
+  /**
+   * A language output file and the merges written to it, in order.
+   */
+  private static class LanguageOutput {
 
-    Template templ = velocityEngine.getTemplate(template);
-    templ.merge(vc, stringWriter);
+    final File dir;
+    final String name;
+    final List<LanguageContext> merges = new ArrayList<LanguageContext>();
 
-    return stringWriter.toString();
+
+    LanguageOutput(File dir, String name) {
+      this.dir = dir;
+      this.name = name;
+    }
+  }
+
+
+  /**
+   * What a language template is merged with for one language, and table for the table language
+   * templates. Immutable, each merge gets a fresh copy of the data to set its variables in.
+   */
+  private static final class LanguageContext {
+
+    final String template;
+    final String language;
+    final Inform8Table table;
+    final Map<String, Object> shared;
+
+
+    LanguageContext(String template, String language, Inform8Table table, Map<String, Object> shared) {
+      this.template = template;
+      this.language = language;
+      this.table = table;
+      this.shared = shared;
+    }
+
+
+    HashMap<String, Object> newData() {
+      HashMap<String, Object> data = new HashMap<String, Object>(shared);
+      data.put("currentLanguage", language);
+      if (table != null) {
+        data.put("table", table);
+      }
+      return data;
+    }
   }
 
 }
\ No newline at end of file
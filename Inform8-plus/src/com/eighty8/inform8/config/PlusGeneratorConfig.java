@@ -89,4 +89,115 @@ public class PlusGeneratorConfig extends Config {
     return adminIgnores.contains(tableName);
   }
 
+
+  /**
+   * The number of worker threads used for table generation. 0 or less uses one thread per
+   * available processor. Defaults to 1, generating on a single thread.
+   */
+  public int getGenerationThreads() {
+    int threads = Integer.parseInt(config.getProperty("gen.threads", "1").trim());
+    if (threads <= 0) {
+      return Runtime.getRuntime().availableProcessors();
+    }
+    return threads;
+  }
+
+
+  /**
+   * When true only outputs whose inputs changed since the last run are generated, see
+   * GenerationManifest. Defaults to false.
+   */
+  public boolean isIncrementalGeneration() {
+    return Boolean.parseBoolean(config.getProperty("gen.incremental", "false").trim());
+  }
+
+
+  /**
+   * The SQL file watched for schema changes in watch mode. Defaults to the schema file, null if
+   * neither is set.
+   */
+  public String getWatchSqlFile() {
+    String sqlFile = config.getProperty("watch.sql.file", "").trim();
+    return sqlFile.isEmpty() ? getSchemaFile() : sqlFile;
+  }
+
+
+  /**
+   * When true a MySQL model is read by a few INFORMATION_SCHEMA queries run at the same time,
+   * see MysqlBulkModelBuilder. Defaults to false.
+   */
+  public boolean isBulkModelExtraction() {
+    return Boolean.parseBoolean(config.getProperty("ref.db.bulk", "false").trim());
+  }
+
+
+  /**
+   * The most connections opened to read the model when ref.db.bulk is set. Defaults to 4, one
+   * per query.
+   */
+  public int getModelPoolSize() {
+    return Integer.parseInt(config.getProperty("ref.db.pool.size", "4").trim());
+  }
+
+
+  /**
+   * A DDL file or mysqldump to read the model from instead of the reference database, null if
+   * not set.
+   */
+  public String getSchemaFile() {
+    String schemaFile = config.getProperty("ref.db.schema.file", "").trim();
+    return schemaFile.isEmpty() ? null : schemaFile;
+  }
+
+
+  /**
+   * How often, in milliseconds, watch mode checks for changed files. Defaults to 500.
+   */
+  public long getWatchPollMillis() {
+    return Long.parseLong(config.getProperty("watch.poll.millis", "500").trim());
+  }
+
+
+  /**
+   * How long, in milliseconds, files must stay unchanged before watch mode regenerates. Defaults
+   * to 300.
+   */
+  public long getWatchQuietMillis() {
+    return Long.parseLong(config.getProperty("watch.quiet.millis", "300").trim());
+  }
+
+
+  /**
+   * When true every merge is timed and a report is written to the profile folder, see
+   * ProfileReport. Defaults to false.
+   */
+  public boolean isProfiling() {
+    return Boolean.parseBoolean(config.getProperty("profile.enabled", "false").trim());
+  }
+
+
+  /**
+   * When true the profile also includes a Chrome trace of the worker threads. Defaults to false.
+   */
+  public boolean isProfileTrace() {
+    return Boolean.parseBoolean(config.getProperty("profile.trace", "false").trim());
+  }
+
+
+  /**
+   * The folder the profile is written to. Defaults to profile.
+   */
+  public String getProfileFolder() {
+    return config.getProperty("profile.out.folder", "profile").trim();
+  }
+
+
+  /**
+   * When true each language is generated as its general entries plus a file of entries for each
+   * table, loaded when first used. Defaults to false, one file with every entry.
+   */
+  public boolean isLanguageSplit() {
+    return Boolean.parseBoolean(config.getProperty("lang.split.tables", "false").trim());
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A small, fixed size pool of JDBC connections, opened as they are first needed.
+ *
+ * borrow() blocks while every connection is in use. Connections must be given back with
+ * release() and are all closed by close().
+ *
+ * @author ryanhenderson
+ */
+public class ConnectionPool {
+
+  static Logger LOG = Logger.getLogger(ConnectionPool.class);
+
+  private final String url;
+
+  private final String user;
+
+  private final String password;
+
+  private final int size;
+
+  private final List<Connection> all = new ArrayList<Connection>();
+
+  private final LinkedList<Connection> idle = new LinkedList<Connection>();
+
+  private long connectNanos;
+
+  private boolean closed;
+
+
+  /**
+   * @param size
+   *          the most connections open at once, at least 1
+   */
+  public ConnectionPool(String url, String user, String password, int size) {
+    this.url = url;
+    this.user = user;
+    this.password = password;
+    this.size = Math.max(1, size);
+  }
+
+
+  /**
+   * Takes a connection from the pool, opening a new one if none are idle and the pool is not
+   * full, otherwise waiting for one to be released.
+   */
+  public Connection borrow() throws SQLException, InterruptedException {
+    synchronized (this) {
+      while (true) {
+        if (closed) {
+          throw new IllegalStateException("Connection pool is closed");
+        }
+        if (!idle.isEmpty()) {
+          return idle.removeFirst();
+        }
+        if (all.size() < size) {
+          // reserve the slot, the connection is opened outside the lock
+          all.add(null);
+          break;
+        }
+        wait();
+      }
+    }
+
+    Connection conn = null;
+    long start = System.nanoTime();
+    try {
+      conn = DriverManager.getConnection(url, user, password);
+      return conn;
+    } finally {
+      synchronized (this) {
+        connectNanos += System.nanoTime() - start;
+        all.remove(null);
+        if (conn != null) {
+          all.add(conn);
+        }
+        notifyAll();
+      }
+    }
+  }
+
+
+  /**
+   * Gives a borrowed connection back to the pool.
+   */
+  public synchronized void release(Connection conn) {
+    if (closed) {
+      closeQuietly(conn);
+      return;
+    }
+    idle.addLast(conn);
+    notifyAll();
+  }
+
+
+  /**
+   * @return the total time spent opening connections, in nanoseconds
+   */
+  public synchronized long getConnectNanos() {
+    return connectNanos;
+  }
+
+
+  /**
+   * @return the number of connections opened
+   */
+  public synchronized int getOpened() {
+    int opened = 0;
+    for (Connection conn : all) {
+      if (conn != null) {
+        opened++;
+      }
+    }
+    return opened;
+  }
+
+
+  /**
+   * Closes every connection, including those still borrowed.
+   */
+  public synchronized void close() {
+    closed = true;
+    for (Connection conn : all) {
+      closeQuietly(conn);
+    }
+    all.clear();
+    idle.clear();
+    notifyAll();
+  }
+
+
+  private static void closeQuietly(Connection conn) {
+    if (conn == null) {
+      return;
+    }
+    try {
+      conn.close();
+    } catch (SQLException e) {
+      LOG.warn("Unable to close connection", e);
+    }
+  }
+
+}
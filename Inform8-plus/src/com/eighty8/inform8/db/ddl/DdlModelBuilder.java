@@ -0,0 +1,598 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.db.ddl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.eighty8.inform8.db.ddl.DdlTokenizer.Kind;
+import com.eighty8.inform8.db.model.DatabaseModel;
+import com.eighty8.inform8.db.model.ModelBuilder;
+import com.eighty8.inform8.db.mysql.MysqlTypes;
+import com.eighty8.inform8.db.table.Inform8Column;
+import com.eighty8.inform8.db.table.Inform8Table;
+
+/**
+ * Builds the model from a SQL schema file, such as install.sql or a mysqldump, without a
+ * database.
+ *
+ * The file is read once, as a stream. CREATE TABLE statements provide the tables, columns,
+ * primary keys, unique keys and foreign keys; ALTER TABLE ... ADD adds primary, unique and
+ * foreign keys. Every other statement, including the INSERTs of a dump, is passed over without
+ * being held in memory, so the memory used depends on the size of the schema and not the file.
+ *
+ * Foreign keys are linked once the whole file is read, so they may refer to tables created
+ * later in the file.
+ *
+ * @author ryanhenderson
+ */
+public class DdlModelBuilder implements ModelBuilder {
+
+  static Logger LOG = Logger.getLogger(DdlModelBuilder.class);
+
+  /** Label added to columns declared NOT NULL */
+  public static final String NOT_NULL = "NOT_NULL";
+
+  /** Label added to columns that are unique on their own */
+  public static final String UNIQUE = "UNIQUE";
+
+  private final File sqlFile;
+
+  private final String encoding;
+
+  /** the tables by lower case name, in file order */
+  private final Map<String, TableDef> tables = new LinkedHashMap<String, TableDef>();
+
+  private final List<ForeignKeyDef> foreignKeys = new ArrayList<ForeignKeyDef>();
+
+  private DdlTokenizer tokens;
+
+
+  /**
+   * @param sqlFile
+   *          the schema file, read as UTF-8
+   */
+  public DdlModelBuilder(File sqlFile) {
+    this(sqlFile, "UTF-8");
+  }
+
+
+  public DdlModelBuilder(File sqlFile, String encoding) {
+    this.sqlFile = sqlFile;
+    this.encoding = encoding;
+  }
+
+
+  @Override
+  public DatabaseModel extractModel() throws Exception {
+    long start = System.currentTimeMillis();
+    Reader in = new InputStreamReader(new FileInputStream(sqlFile), encoding);
+    try {
+      return extractModel(in);
+    } finally {
+      in.close();
+      LOG.info("Schema " + sqlFile + " read in " + (System.currentTimeMillis() - start) + "ms: " + tables.size()
+          + " tables, " + foreignKeys.size() + " foreign keys");
+    }
+  }
+
+
+  /**
+   * Reads the model from the statements.
+   */
+  public DatabaseModel extractModel(Reader in) throws IOException {
+    tables.clear();
+    foreignKeys.clear();
+    tokens = new DdlTokenizer(in);
+
+    while (tokens.next() != Kind.END) {
+      if (tokens.isSymbol(';')) {
+        continue;
+      }
+      if (tokens.isWord("CREATE")) {
+        createStatement();
+      } else if (tokens.isWord("ALTER")) {
+        alterStatement();
+      } else {
+        tokens.skipStatement();
+      }
+    }
+
+    return buildModel();
+  }
+
+
+  private void createStatement() throws IOException {
+    tokens.next();
+    if (tokens.isWord("TEMPORARY")) {
+      tokens.next();
+    }
+    if (!tokens.isWord("TABLE")) {
+      // views, databases, indexes, procedures...
+      tokens.skipStatement();
+      return;
+    }
+    int line = tokens.getLine();
+    tokens.next();
+    if (tokens.isWord("IF")) {
+      expectWord("NOT");
+      expectWord("EXISTS");
+      tokens.next();
+    }
+    String name = qualifiedName();
+
+    tokens.next();
+    if (!tokens.isSymbol('(')) {
+      LOG.warn(location(line) + "CREATE TABLE " + name + " without column definitions ignored");
+      tokens.skipStatement();
+      return;
+    }
+    if (tables.containsKey(key(name))) {
+      throw error(line, "Table " + name + " is created more than once");
+    }
+    TableDef table = new TableDef(name);
+    tables.put(key(name), table);
+
+    do {
+      tokens.next();
+      if (tokens.getKind() == Kind.WORD && isTableConstraint()) {
+        tableConstraint(table);
+      } else if (tokens.getKind() == Kind.WORD || tokens.getKind() == Kind.IDENTIFIER) {
+        column(table);
+      } else if (!tokens.isSymbol(')')) {
+        throw unexpected();
+      }
+    } while (tokens.isSymbol(','));
+
+    if (!tokens.isSymbol(')')) {
+      throw unexpected();
+    }
+    // table options
+    tokens.skipStatement();
+  }
+
+
+  private void alterStatement() throws IOException {
+    tokens.next();
+    if (tokens.isWord("IGNORE") || tokens.isWord("ONLINE")) {
+      tokens.next();
+    }
+    if (!tokens.isWord("TABLE")) {
+      tokens.skipStatement();
+      return;
+    }
+    int line = tokens.getLine();
+    tokens.next();
+    String name = qualifiedName();
+    TableDef table = tables.get(key(name));
+    if (table == null) {
+      LOG.warn(location(line) + "ALTER TABLE of unknown table " + name + " ignored");
+      tokens.skipStatement();
+      return;
+    }
+
+    while (true) {
+      tokens.next();
+      if (tokens.isWord("ADD")) {
+        tokens.next();
+        if (tokens.getKind() == Kind.WORD && isTableConstraint()) {
+          tableConstraint(table);
+        } else {
+          // columns added later are not supported, nor are the other changes
+          LOG.debug(location(tokens.getLine()) + "ALTER TABLE " + name + " ADD " + tokens.getText() + " ignored");
+          skipToEndOfClause();
+        }
+      } else if (tokens.getKind() != Kind.END && !tokens.isSymbol(';')) {
+        skipToEndOfClause();
+      }
+      if (!tokens.isSymbol(',')) {
+        break;
+      }
+    }
+    if (tokens.getKind() != Kind.END && !tokens.isSymbol(';')) {
+      throw unexpected();
+    }
+  }
+
+
+  private boolean isTableConstraint() {
+    return tokens.isWord("CONSTRAINT") || tokens.isWord("PRIMARY") || tokens.isWord("UNIQUE") || tokens.isWord("FOREIGN")
+        || tokens.isWord("KEY") || tokens.isWord("INDEX") || tokens.isWord("FULLTEXT") || tokens.isWord("SPATIAL")
+        || tokens.isWord("CHECK");
+  }
+
+
+  /**
+   * A key, index or constraint, starting at its first word. Ends on the token after it.
+   */
+  private void tableConstraint(TableDef table) throws IOException {
+    int line = tokens.getLine();
+    if (tokens.isWord("CONSTRAINT")) {
+      tokens.next();
+      if (!tokens.isWord("PRIMARY") && !tokens.isWord("UNIQUE") && !tokens.isWord("FOREIGN") && !tokens.isWord("CHECK")) {
+        // the constraint name
+        tokens.next();
+      }
+    }
+
+    if (tokens.isWord("PRIMARY")) {
+      expectWord("KEY");
+      List<String> columns = keyColumns();
+      if (columns.size() == 1) {
+        table.primaryKey = columns.get(0);
+      } else {
+        LOG.warn(location(line) + "Composite primary key of " + table.name + " " + columns + " is not supported, ignored");
+      }
+      tokens.next();
+    } else if (tokens.isWord("UNIQUE")) {
+      List<String> columns = keyColumns();
+      if (columns.size() == 1) {
+        table.unique.add(columns.get(0));
+      }
+      tokens.next();
+    } else if (tokens.isWord("FOREIGN")) {
+      expectWord("KEY");
+      List<String> columns = keyColumns();
+      expectWord("REFERENCES");
+      tokens.next();
+      String master = qualifiedName();
+      List<String> masterColumns = keyColumns();
+      if (columns.size() == 1 && masterColumns.size() == 1) {
+        foreignKeys.add(new ForeignKeyDef(line, table.name, columns.get(0), master, masterColumns.get(0)));
+      } else {
+        LOG.warn(location(line) + "Composite foreign key " + table.name + " " + columns + " is not supported, ignored");
+      }
+      tokens.next();
+    }
+    // index options, ON DELETE..., CHECK expressions
+    skipToEndOfClause();
+  }
+
+
+  /**
+   * The column names of a key, skipping anything before the opening bracket such as an index
+   * name or type, and any lengths or ordering of the columns.
+   */
+  private List<String> keyColumns() throws IOException {
+    int line = tokens.getLine();
+    do {
+      tokens.next();
+      if (tokens.getKind() == Kind.END || tokens.isSymbol(';') || tokens.isSymbol(',')) {
+        throw error(line, "Key without columns");
+      }
+    } while (!tokens.isSymbol('('));
+
+    List<String> columns = new ArrayList<String>();
+    do {
+      tokens.next();
+      if (tokens.getKind() != Kind.WORD && tokens.getKind() != Kind.IDENTIFIER) {
+        throw unexpected();
+      }
+      columns.add(tokens.getText());
+      tokens.next();
+      while (!tokens.isSymbol(',') && !tokens.isSymbol(')')) {
+        if (tokens.isSymbol('(')) {
+          skipBrackets();
+        }
+        if (tokens.getKind() == Kind.END) {
+          throw unexpected();
+        }
+        tokens.next();
+      }
+    } while (tokens.isSymbol(','));
+    return columns;
+  }
+
+
+  /**
+   * A column definition, starting at its name. Ends on the ',' or ')' after it.
+   */
+  private void column(TableDef table) throws IOException {
+    ColumnDef col = new ColumnDef(tokens.getText());
+    if (tokens.next() != Kind.WORD) {
+      throw unexpected();
+    }
+    col.type = tokens.getText().toLowerCase();
+    table.columns.add(col);
+
+    tokens.next();
+    while (!tokens.isSymbol(',') && !tokens.isSymbol(')')) {
+      if (tokens.isWord("NOT")) {
+        tokens.next();
+        if (tokens.isWord("NULL")) {
+          col.notNull = true;
+        }
+        tokens.next();
+      } else if (tokens.isWord("DEFAULT")) {
+        col.defaultValue = defaultValue();
+      } else if (tokens.isWord("PRIMARY")) {
+        expectWord("KEY");
+        table.primaryKey = col.name;
+        tokens.next();
+      } else if (tokens.isWord("UNIQUE")) {
+        table.unique.add(col.name);
+        tokens.next();
+      } else if (tokens.isSymbol('(')) {
+        skipBrackets();
+        tokens.next();
+      } else if (tokens.getKind() == Kind.END || tokens.isSymbol(';')) {
+        throw unexpected();
+      } else {
+        tokens.next();
+      }
+    }
+  }
+
+
+  /**
+   * The value after DEFAULT, null for NULL. Ends on the token after the value.
+   */
+  private String defaultValue() throws IOException {
+    tokens.next();
+    String value;
+    if (tokens.isWord("NULL")) {
+      value = null;
+    } else if (tokens.isSymbol('(')) {
+      // an expression, MySQL 8
+      value = null;
+      skipBrackets();
+    } else if (tokens.isSymbol('-') || tokens.isSymbol('+')) {
+      String sign = tokens.isSymbol('-') ? "-" : "";
+      tokens.next();
+      value = sign + number();
+      return value;
+    } else if (isLiteralPrefix()) {
+      // b'0' or x'1F', joined as INFORMATION_SCHEMA reports it
+      String prefix = tokens.getText();
+      tokens.next();
+      if (tokens.getKind() != Kind.STRING) {
+        return prefix;
+      }
+      value = prefix + "'" + tokens.getText() + "'";
+    } else if (tokens.getKind() == Kind.WORD && Character.isDigit(tokens.getText().charAt(0))) {
+      return number();
+    } else {
+      value = tokens.getText();
+    }
+    tokens.next();
+    return value;
+  }
+
+
+  /**
+   * @return true on the b, x or 0x before the string of a bit or hex literal
+   */
+  private boolean isLiteralPrefix() {
+    return tokens.isWord("b") || tokens.isWord("x") || tokens.isWord("0x");
+  }
+
+
+  /**
+   * A number starting at the current word, joining any decimal part. Ends on the token after it.
+   */
+  private String number() throws IOException {
+    String value = tokens.getText();
+    tokens.next();
+    if (tokens.isSymbol('.')) {
+      tokens.next();
+      if (tokens.getKind() == Kind.WORD) {
+        value = value + "." + tokens.getText();
+        tokens.next();
+      } else {
+        value = value + ".";
+      }
+    }
+    return value;
+  }
+
+
+  /**
+   * A table name, possibly qualified by its database, starting at the current token.
+   */
+  private String qualifiedName() throws IOException {
+    if (tokens.getKind() != Kind.WORD && tokens.getKind() != Kind.IDENTIFIER) {
+      throw unexpected();
+    }
+    String name = tokens.getText();
+    tokens.next();
+    if (tokens.isSymbol('.')) {
+      tokens.next();
+      name = tokens.getText();
+    } else {
+      tokens.pushBack();
+    }
+    return name;
+  }
+
+
+  /**
+   * Skips to the matching ')' of the current '('.
+   */
+  private void skipBrackets() throws IOException {
+    int depth = 1;
+    while (depth > 0) {
+      tokens.next();
+      if (tokens.isSymbol('(')) {
+        depth++;
+      } else if (tokens.isSymbol(')')) {
+        depth--;
+      } else if (tokens.getKind() == Kind.END) {
+        throw unexpected();
+      }
+    }
+  }
+
+
+  /**
+   * Skips to the ',' or closing ')' that ends the current clause, or the end of the statement.
+   */
+  private void skipToEndOfClause() throws IOException {
+    while (!tokens.isSymbol(',') && !tokens.isSymbol(')') && !tokens.isSymbol(';') && tokens.getKind() != Kind.END) {
+      if (tokens.isSymbol('(')) {
+        skipBrackets();
+      }
+      tokens.next();
+    }
+  }
+
+
+  private void expectWord(String word) throws IOException {
+    tokens.next();
+    if (!tokens.isWord(word)) {
+      throw error(tokens.getLine(), "Expected " + word + " but found '" + tokens.getText() + "'");
+    }
+  }
+
+
+  private DatabaseModel buildModel() {
+    DatabaseModel model = new DatabaseModel();
+    for (TableDef def : tables.values()) {
+      Inform8Table table = new Inform8Table(def.name);
+      for (ColumnDef colDef : def.columns) {
+        Inform8Column col = new Inform8Column(colDef.name, MysqlTypes.getType(colDef.type));
+        col.setDefaultValue(colDef.defaultValue);
+        if (colDef.notNull) {
+          col.getSettings().addLabel(NOT_NULL);
+        }
+        if (def.isUnique(colDef.name)) {
+          col.getSettings().addLabel(UNIQUE);
+        }
+        table.addColumn(col);
+        if (colDef.name.equalsIgnoreCase(def.primaryKey)) {
+          table.setPrimaryKey(col);
+        }
+      }
+      if (def.primaryKey != null && table.getPrimaryKey() == null) {
+        throw new IllegalStateException(sqlFile + ": primary key column " + def.primaryKey + " not found in table " + def.name);
+      }
+      model.addTable(table);
+    }
+
+    for (ForeignKeyDef fk : foreignKeys) {
+      TableDef child = tables.get(key(fk.childTable));
+      TableDef master = tables.get(key(fk.masterTable));
+      if (master == null) {
+        throw error(fk.line, "Foreign key from " + fk.childTable + "." + fk.childColumn + " references unknown table " + fk.masterTable);
+      }
+      if (!child.hasColumn(fk.childColumn)) {
+        throw error(fk.line, "Foreign key column " + fk.childColumn + " not found in table " + fk.childTable);
+      }
+      if (!master.hasColumn(fk.masterColumn)) {
+        throw error(fk.line, "Foreign key references unknown column " + fk.masterTable + "." + fk.masterColumn);
+      }
+      model.addForeignKey(child.name, child.columnName(fk.childColumn), master.name, master.columnName(fk.masterColumn));
+    }
+    return model;
+  }
+
+
+  private IllegalStateException unexpected() {
+    String found = tokens.getKind() == Kind.END ? "end of file" : "'" + tokens.getText() + "'";
+    return error(tokens.getLine(), "Unexpected " + found);
+  }
+
+
+  private IllegalStateException error(int line, String message) {
+    return new IllegalStateException(location(line) + message);
+  }
+
+
+  private String location(int line) {
+    return (sqlFile == null ? "" : sqlFile.getPath()) + ":" + line + ": ";
+  }
+
+
+  private static String key(String name) {
+    return name.toLowerCase();
+  }
+
+
+  private static class TableDef {
+
+    final String name;
+    final List<ColumnDef> columns = new ArrayList<ColumnDef>();
+    final List<String> unique = new ArrayList<String>();
+    String primaryKey;
+
+
+    TableDef(String name) {
+      this.name = name;
+    }
+
+
+    boolean hasColumn(String column) {
+      return columnName(column) != null;
+    }
+
+
+    /**
+     * @return the column name as declared, null if there is no such column
+     */
+    String columnName(String column) {
+      for (ColumnDef col : columns) {
+        if (col.name.equalsIgnoreCase(column)) {
+          return col.name;
+        }
+      }
+      return null;
+    }
+
+
+    boolean isUnique(String column) {
+      for (String name : unique) {
+        if (name.equalsIgnoreCase(column)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+
+  private static class ColumnDef {
+
+    final String name;
+    String type;
+    String defaultValue;
+    boolean notNull;
+
+
+    ColumnDef(String name) {
+      this.name = name;
+    }
+  }
+
+
+  private static class ForeignKeyDef {
+
+    final int line;
+    final String childTable;
+    final String childColumn;
+    final String masterTable;
+    final String masterColumn;
+
+
+    ForeignKeyDef(int line, String childTable, String childColumn, String masterTable, String masterColumn) {
+      this.line = line;
+      this.childTable = childTable;
+      this.childColumn = childColumn;
+      this.masterTable = masterTable;
+      this.masterColumn = masterColumn;
+    }
+  }
+
+}
@@ -0,0 +1,329 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.db.ddl;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits MySQL flavoured SQL into tokens in a single pass over a stream, holding no more than
+ * the current token in memory.
+ *
+ * Whitespace and comments (--, # and C style, including mysqldump's conditional comments) are
+ * skipped. Statements that are of no interest, such as the INSERTs of a dump, can be passed over
+ * with skipStatement() without creating any tokens.
+ *
+ * @author ryanhenderson
+ */
+public class DdlTokenizer {
+
+  public enum Kind {
+    /** an unquoted word: keyword, identifier or number */
+    WORD,
+    /** a `quoted` identifier */
+    IDENTIFIER,
+    /** a 'quoted' or "quoted" string */
+    STRING,
+    /** any other single character */
+    SYMBOL,
+    /** the end of the input */
+    END
+  }
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Reader in;
+
+  private final char[] buffer = new char[BUFFER_SIZE];
+
+  private int pos;
+
+  private int limit;
+
+  private int line = 1;
+
+  private final StringBuilder text = new StringBuilder();
+
+  private Kind kind;
+
+  private int tokenLine;
+
+  private boolean pushedBack;
+
+
+  public DdlTokenizer(Reader in) {
+    this.in = in;
+  }
+
+
+  /**
+   * Moves to the next token.
+   *
+   * @return the kind of the token
+   */
+  public Kind next() throws IOException {
+    if (pushedBack) {
+      pushedBack = false;
+      return kind;
+    }
+    text.setLength(0);
+    skipSpaceAndComments();
+    tokenLine = line;
+
+    int c = read();
+    if (c < 0) {
+      kind = Kind.END;
+    } else if (c == '`') {
+      readQuoted('`');
+      kind = Kind.IDENTIFIER;
+    } else if (c == '\'' || c == '"') {
+      readQuoted((char) c);
+      kind = Kind.STRING;
+    } else if (isWordChar(c)) {
+      text.append((char) c);
+      while (isWordChar(peek())) {
+        text.append((char) read());
+      }
+      kind = Kind.WORD;
+    } else {
+      text.append((char) c);
+      kind = Kind.SYMBOL;
+    }
+    return kind;
+  }
+
+
+  /**
+   * Makes the next call to next() return the current token again.
+   */
+  public void pushBack() {
+    pushedBack = true;
+  }
+
+
+  public Kind getKind() {
+    return kind;
+  }
+
+
+  /**
+   * @return the text of the current token, without quotes for identifiers and strings
+   */
+  public String getText() {
+    return text.toString();
+  }
+
+
+  /**
+   * @return true if the current token is the unquoted word, ignoring case
+   */
+  public boolean isWord(String word) {
+    return kind == Kind.WORD && text.length() == word.length() && text.toString().equalsIgnoreCase(word);
+  }
+
+
+  /**
+   * @return true if the current token is the symbol
+   */
+  public boolean isSymbol(char symbol) {
+    return kind == Kind.SYMBOL && text.charAt(0) == symbol;
+  }
+
+
+  /**
+   * @return the line the current token starts on
+   */
+  public int getLine() {
+    return tokenLine;
+  }
+
+
+  /**
+   * Passes over the rest of the current statement, up to and including the next ';' outside of
+   * quotes and comments, without creating tokens.
+   */
+  public void skipStatement() throws IOException {
+    if (pushedBack) {
+      pushedBack = false;
+      if (kind == Kind.END || isSymbol(';')) {
+        return;
+      }
+    }
+    while (true) {
+      skipSpaceAndComments();
+      int c = read();
+      if (c < 0 || c == ';') {
+        text.setLength(0);
+        kind = c < 0 ? Kind.END : Kind.SYMBOL;
+        if (c == ';') {
+          text.append(';');
+        }
+        return;
+      }
+      if (c == '`' || c == '\'' || c == '"') {
+        skipQuoted((char) c);
+      }
+    }
+  }
+
+
+  private void skipSpaceAndComments() throws IOException {
+    while (true) {
+      int c = peek();
+      if (c < 0) {
+        return;
+      }
+      if (Character.isWhitespace(c)) {
+        read();
+      } else if (c == '#') {
+        skipLine();
+      } else if (c == '-' && peekAhead(1) == '-' && (peekAhead(2) < 0 || Character.isWhitespace(peekAhead(2)))) {
+        skipLine();
+      } else if (c == '/' && peekAhead(1) == '*') {
+        read();
+        read();
+        int prev = -1;
+        while ((c = read()) >= 0 && !(prev == '*' && c == '/')) {
+          prev = c;
+        }
+      } else {
+        return;
+      }
+    }
+  }
+
+
+  private void skipLine() throws IOException {
+    int c;
+    while ((c = read()) >= 0 && c != '\n') {
+      // skip
+    }
+  }
+
+
+  private void readQuoted(char quote) throws IOException {
+    int c;
+    while ((c = read()) >= 0) {
+      if (c == quote) {
+        if (peek() == quote) {
+          // a doubled quote is a literal quote
+          text.append((char) read());
+          continue;
+        }
+        return;
+      }
+      if (c == '\\' && quote != '`') {
+        c = read();
+        if (c < 0) {
+          return;
+        }
+        text.append(unescape((char) c));
+        continue;
+      }
+      text.append((char) c);
+    }
+  }
+
+
+  private void skipQuoted(char quote) throws IOException {
+    int c;
+    while ((c = read()) >= 0) {
+      if (c == quote) {
+        if (peek() == quote) {
+          read();
+          continue;
+        }
+        return;
+      }
+      if (c == '\\' && quote != '`') {
+        read();
+      }
+    }
+  }
+
+
+  private static char unescape(char c) {
+    switch (c) {
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 't':
+        return '\t';
+      case '0':
+        return '\0';
+      default:
+        return c;
+    }
+  }
+
+
+  private static boolean isWordChar(int c) {
+    return c >= 0 && (Character.isLetterOrDigit(c) || c == '_' || c == '$');
+  }
+
+
+  private int read() throws IOException {
+    if (pos >= limit && !fill()) {
+      return -1;
+    }
+    char c = buffer[pos++];
+    if (c == '\n') {
+      line++;
+    }
+    return c;
+  }
+
+
+  private int peek() throws IOException {
+    return peekAhead(0);
+  }
+
+
+  private int peekAhead(int offset) throws IOException {
+    if (pos + offset >= limit) {
+      compact();
+      while (pos + offset >= limit) {
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+          return -1;
+        }
+        limit += read;
+      }
+    }
+    return buffer[pos + offset];
+  }
+
+
+  private boolean fill() throws IOException {
+    pos = 0;
+    limit = 0;
+    int read;
+    while ((read = in.read(buffer, 0, buffer.length)) == 0) {
+      // keep reading
+    }
+    if (read < 0) {
+      return false;
+    }
+    limit = read;
+    return true;
+  }
+
+
+  /**
+   * Moves the unread characters to the start of the buffer, making room for look ahead.
+   */
+  private void compact() {
+    if (pos > 0) {
+      System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+      limit -= pos;
+      pos = 0;
+    }
+  }
+
+}
@@ -0,0 +1,150 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.db.model;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.eighty8.inform8.db.table.Inform8Column;
+import com.eighty8.inform8.db.table.Inform8Table;
+
+/**
+ * A case insensitive index over the tables and columns of a model, so config entries can be
+ * applied by name without scanning every table.
+ *
+ * Lookups of tables or columns that do not exist fail with a message naming them.
+ *
+ * @author ryanhenderson
+ */
+public class ModelIndex {
+
+  private final Map<String, TableEntry> tables = new LinkedHashMap<String, TableEntry>();
+
+
+  public ModelIndex(DatabaseModel model) {
+    this(model.getTables());
+  }
+
+
+  public ModelIndex(List<Inform8Table> tables) {
+    for (Inform8Table table : tables) {
+      // the first of any tables differing only by case wins, as the old linear scans did
+      if (!this.tables.containsKey(key(table.getName()))) {
+        this.tables.put(key(table.getName()), new TableEntry(table));
+      }
+    }
+  }
+
+
+  public boolean hasTable(String name) {
+    return tables.containsKey(key(name));
+  }
+
+
+  public boolean hasColumn(String table, String column) {
+    TableEntry entry = tables.get(key(table));
+    return entry != null && entry.columns.containsKey(key(column));
+  }
+
+
+  /**
+   * @return the table, ignoring case
+   * @throws IllegalArgumentException
+   *           if there is no such table
+   */
+  public Inform8Table getTable(String name) {
+    return entry(name).table;
+  }
+
+
+  /**
+   * @return the column of the table, ignoring case
+   * @throws IllegalArgumentException
+   *           if there is no such table or column, or the column has been removed
+   */
+  public Inform8Column getColumn(String table, String column) {
+    TableEntry entry = entry(table);
+    Inform8Column col = entry.columns.get(key(column));
+    if (col == null) {
+      if (entry.removed.containsKey(key(column))) {
+        throw new IllegalArgumentException("Column '" + column + "' has been removed from table '" + entry.table.getName() + "'");
+      }
+      throw new IllegalArgumentException("Unknown column '" + column + "' in table '" + entry.table.getName() + "'");
+    }
+    return col;
+  }
+
+
+  /**
+   * Removes the column from its table and the index. Removing a column twice does nothing.
+   */
+  public void removeColumn(String table, String column) {
+    TableEntry entry = entry(table);
+    if (entry.removed.containsKey(key(column))) {
+      return;
+    }
+    Inform8Column col = getColumn(table, column);
+    entry.table.removeColumn(col);
+    entry.columns.remove(key(column));
+    entry.removed.put(key(column), col);
+  }
+
+
+  /**
+   * Checks a table, and optionally a column of it, exist, adding a message to the errors if not.
+   *
+   * @param source
+   *          what refers to the table, used in the message
+   * @param table
+   *          the table name
+   * @param column
+   *          the column name, or null to check just the table
+   * @param errors
+   *          receives a message for each missing table or column
+   */
+  public void check(String source, String table, String column, List<String> errors) {
+    if (!hasTable(table)) {
+      errors.add(source + ": unknown table '" + table + "'");
+    } else if (column != null && !hasColumn(table, column)) {
+      errors.add(source + ": unknown column '" + column + "' in table '" + table + "'");
+    }
+  }
+
+
+  private TableEntry entry(String name) {
+    TableEntry entry = tables.get(key(name));
+    if (entry == null) {
+      throw new IllegalArgumentException("Unknown table '" + name + "'");
+    }
+    return entry;
+  }
+
+
+  private static String key(String name) {
+    return name == null ? null : name.toLowerCase();
+  }
+
+
+  private static class TableEntry {
+
+    final Inform8Table table;
+    final Map<String, Inform8Column> columns = new HashMap<String, Inform8Column>();
+    final Map<String, Inform8Column> removed = new HashMap<String, Inform8Column>();
+
+
+    TableEntry(Inform8Table table) {
+      this.table = table;
+      for (Inform8Column col : table.getColumns()) {
+        columns.put(key(col.getName()), col);
+      }
+    }
+  }
+
+}
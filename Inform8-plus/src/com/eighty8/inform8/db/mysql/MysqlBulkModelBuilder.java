@@ -0,0 +1,313 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.db.mysql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import com.eighty8.inform8.db.ConnectionPool;
+import com.eighty8.inform8.db.ddl.DdlModelBuilder;
+import com.eighty8.inform8.db.model.DatabaseModel;
+import com.eighty8.inform8.db.model.ModelBuilder;
+import com.eighty8.inform8.db.table.Inform8Column;
+import com.eighty8.inform8.db.table.Inform8Table;
+
+/**
+ * Builds the model of a MySQL schema from a handful of set based INFORMATION_SCHEMA queries,
+ * rather than a round trip per table.
+ *
+ * The tables, columns, primary / unique keys and foreign keys of the whole schema are each read
+ * by one query. The queries are independent and run at the same time over a small pool of
+ * connections. The time spent connecting, in each query and building the model is logged.
+ *
+ * Columns are labelled NOT_NULL and UNIQUE as DdlModelBuilder does. Keys over more than one
+ * column are ignored, as the model only holds single column keys.
+ *
+ * @author ryanhenderson
+ */
+public class MysqlBulkModelBuilder implements ModelBuilder {
+
+  static Logger LOG = Logger.getLogger(MysqlBulkModelBuilder.class);
+
+  static final String TABLES_SQL = "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES"
+      + " WHERE TABLE_SCHEMA = ? AND TABLE_TYPE = 'BASE TABLE' ORDER BY TABLE_NAME";
+
+  static final String COLUMNS_SQL = "SELECT TABLE_NAME, COLUMN_NAME, DATA_TYPE, IS_NULLABLE, COLUMN_DEFAULT"
+      + " FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = ? ORDER BY TABLE_NAME, ORDINAL_POSITION";
+
+  static final String KEYS_SQL = "SELECT k.TABLE_NAME, k.CONSTRAINT_NAME, k.COLUMN_NAME, c.CONSTRAINT_TYPE"
+      + " FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS c"
+      + " JOIN INFORMATION_SCHEMA.KEY_COLUMN_USAGE k ON k.CONSTRAINT_SCHEMA = c.CONSTRAINT_SCHEMA"
+      + " AND k.CONSTRAINT_NAME = c.CONSTRAINT_NAME AND k.TABLE_NAME = c.TABLE_NAME"
+      + " WHERE c.TABLE_SCHEMA = ? AND c.CONSTRAINT_TYPE IN ('PRIMARY KEY', 'UNIQUE')"
+      + " ORDER BY k.TABLE_NAME, k.CONSTRAINT_NAME, k.ORDINAL_POSITION";
+
+  static final String FOREIGN_KEYS_SQL = "SELECT TABLE_NAME, CONSTRAINT_NAME, COLUMN_NAME, REFERENCED_TABLE_NAME, REFERENCED_COLUMN_NAME"
+      + " FROM INFORMATION_SCHEMA.KEY_COLUMN_USAGE"
+      + " WHERE TABLE_SCHEMA = ? AND REFERENCED_TABLE_SCHEMA = TABLE_SCHEMA AND REFERENCED_TABLE_NAME IS NOT NULL"
+      + " ORDER BY TABLE_NAME, CONSTRAINT_NAME, ORDINAL_POSITION";
+
+  private final ConnectionPool pool;
+
+  private final String schema;
+
+  /** true if the pool is closed once the model is read */
+  private final boolean ownsPool;
+
+
+  /**
+   * Reads the reference database of the config, ref.db.host, ref.db.port, ref.db.name,
+   * ref.db.user and ref.db.pwd, over a pool of its own.
+   *
+   * @param poolSize
+   *          the most connections to open
+   */
+  public MysqlBulkModelBuilder(Properties config, int poolSize) {
+    this(newPool(config, poolSize), config.getProperty("ref.db.name", "").trim(), true);
+  }
+
+
+  /**
+   * @param pool
+   *          the connections to query with, left open
+   * @param schema
+   *          the schema (database name) to read
+   */
+  public MysqlBulkModelBuilder(ConnectionPool pool, String schema) {
+    this(pool, schema, false);
+  }
+
+
+  private MysqlBulkModelBuilder(ConnectionPool pool, String schema, boolean ownsPool) {
+    this.pool = pool;
+    this.schema = schema;
+    this.ownsPool = ownsPool;
+  }
+
+
+  private static ConnectionPool newPool(Properties config, int size) {
+    try {
+      Class.forName("com.mysql.jdbc.Driver");
+    } catch (ClassNotFoundException e) {
+      // a JDBC 4 driver registers itself
+      LOG.debug("com.mysql.jdbc.Driver not found, relying on the driver being registered");
+    }
+    String url = "jdbc:mysql://" + config.getProperty("ref.db.host", "localhost").trim() + ":"
+        + config.getProperty("ref.db.port", "3306").trim() + "/" + config.getProperty("ref.db.name", "").trim();
+    return new ConnectionPool(url, config.getProperty("ref.db.user", "").trim(), config.getProperty("ref.db.pwd", ""), size);
+  }
+
+
+  @Override
+  public DatabaseModel extractModel() throws Exception {
+    long start = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Rows>> queries = new ArrayList<Future<Rows>>();
+      queries.add(executor.submit(query("tables", TABLES_SQL, 1)));
+      queries.add(executor.submit(query("columns", COLUMNS_SQL, 5)));
+      queries.add(executor.submit(query("keys", KEYS_SQL, 4)));
+      queries.add(executor.submit(query("foreign keys", FOREIGN_KEYS_SQL, 5)));
+
+      List<Rows> results = new ArrayList<Rows>();
+      for (Future<Rows> rows : queries) {
+        results.add(get(rows));
+      }
+
+      long buildStart = System.nanoTime();
+      DatabaseModel model = buildModel(results.get(0), results.get(1), results.get(2), results.get(3));
+      long buildNanos = System.nanoTime() - buildStart;
+
+      StringBuilder timings = new StringBuilder();
+      timings.append("Schema ").append(schema).append(" read in ").append(millis(System.nanoTime() - start)).append("ms: ");
+      timings.append(model.getTables().size()).append(" tables over ").append(pool.getOpened()).append(" connections");
+      timings.append(", connect ").append(millis(pool.getConnectNanos())).append("ms");
+      for (Rows rows : results) {
+        timings.append(", ").append(rows.phase).append(" ").append(millis(rows.nanos)).append("ms (").append(rows.size()).append(" rows)");
+      }
+      timings.append(", build ").append(millis(buildNanos)).append("ms");
+      LOG.info(timings);
+      return model;
+    } finally {
+      executor.shutdownNow();
+      if (ownsPool) {
+        pool.close();
+      }
+    }
+  }
+
+
+  /**
+   * Builds the model from the query results. Each row holds the selected columns in order.
+   */
+  DatabaseModel buildModel(List<String[]> tableRows, List<String[]> columnRows, List<String[]> keyRows, List<String[]> foreignKeyRows) {
+    Map<String, Inform8Table> tables = new LinkedHashMap<String, Inform8Table>();
+    for (String[] row : tableRows) {
+      tables.put(row[0], new Inform8Table(row[0]));
+    }
+
+    Map<String, String> primaryKeys = new HashMap<String, String>();
+    Set<String> unique = new HashSet<String>();
+    for (List<String[]> key : singleColumn(keyRows)) {
+      String[] row = key.get(0);
+      if ("PRIMARY KEY".equals(row[3])) {
+        primaryKeys.put(row[0], row[2]);
+      } else {
+        unique.add(row[0] + "." + row[2]);
+      }
+    }
+
+    for (String[] row : columnRows) {
+      Inform8Table table = tables.get(row[0]);
+      if (table == null) {
+        // a view
+        continue;
+      }
+      Inform8Column col = new Inform8Column(row[1], MysqlTypes.getType(row[2]));
+      col.setDefaultValue(row[4]);
+      if ("NO".equals(row[3])) {
+        col.getSettings().addLabel(DdlModelBuilder.NOT_NULL);
+      }
+      if (unique.contains(row[0] + "." + row[1])) {
+        col.getSettings().addLabel(DdlModelBuilder.UNIQUE);
+      }
+      table.addColumn(col);
+      if (row[1].equals(primaryKeys.get(row[0]))) {
+        table.setPrimaryKey(col);
+      }
+    }
+
+    DatabaseModel model = new DatabaseModel();
+    for (Inform8Table table : tables.values()) {
+      model.addTable(table);
+    }
+    for (List<String[]> key : singleColumn(foreignKeyRows)) {
+      String[] row = key.get(0);
+      if (tables.containsKey(row[0]) && tables.containsKey(row[3])) {
+        model.addForeignKey(row[0], row[2], row[3], row[4]);
+      }
+    }
+    return model;
+  }
+
+
+  /**
+   * Groups the rows of a key query by table and constraint name, dropping keys over more than
+   * one column.
+   */
+  private static List<List<String[]>> singleColumn(List<String[]> keyRows) {
+    Map<String, List<String[]>> keys = new LinkedHashMap<String, List<String[]>>();
+    for (String[] row : keyRows) {
+      String name = row[0] + "." + row[1];
+      List<String[]> key = keys.get(name);
+      if (key == null) {
+        keys.put(name, key = new ArrayList<String[]>(1));
+      }
+      key.add(row);
+    }
+
+    List<List<String[]>> single = new ArrayList<List<String[]>>(keys.size());
+    for (Map.Entry<String, List<String[]>> key : keys.entrySet()) {
+      if (key.getValue().size() == 1) {
+        single.add(key.getValue());
+      } else {
+        LOG.warn("Key " + key.getKey() + " is over more than one column, ignoring it");
+      }
+    }
+    return single;
+  }
+
+
+  private Callable<Rows> query(final String phase, final String sql, final int columns) {
+    return new Callable<Rows>() {
+      @Override
+      public Rows call() throws Exception {
+        Connection conn = pool.borrow();
+        try {
+          long start = System.nanoTime();
+          Rows rows = new Rows(phase);
+          PreparedStatement stmt = conn.prepareStatement(sql);
+          try {
+            stmt.setString(1, schema);
+            ResultSet rs = stmt.executeQuery();
+            try {
+              while (rs.next()) {
+                String[] row = new String[columns];
+                for (int i = 0; i < columns; i++) {
+                  row[i] = rs.getString(i + 1);
+                }
+                rows.add(row);
+              }
+            } finally {
+              rs.close();
+            }
+          } finally {
+            stmt.close();
+          }
+          rows.nanos = System.nanoTime() - start;
+          LOG.debug("Read " + rows.size() + " " + phase + " in " + millis(rows.nanos) + "ms");
+          return rows;
+        } finally {
+          pool.release(conn);
+        }
+      }
+    };
+  }
+
+
+  private static Rows get(Future<Rows> rows) throws Exception {
+    try {
+      return rows.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof SQLException) {
+        throw (SQLException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+
+  private static long millis(long nanos) {
+    return nanos / 1000000;
+  }
+
+
+  /**
+   * The rows read by one query and the time it took.
+   */
+  private static class Rows extends ArrayList<String[]> {
+
+    private static final long serialVersionUID = 1L;
+
+    final String phase;
+    long nanos;
+
+
+    Rows(String phase) {
+      this.phase = phase;
+    }
+  }
+
+}
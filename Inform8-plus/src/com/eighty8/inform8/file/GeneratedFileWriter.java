@@ -0,0 +1,257 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.file;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Streams generated output to a file.
+ *
+ * Output is encoded and written through a buffered channel to a temporary file next to the
+ * target, hashing the bytes as they are written. On close the temporary file replaces the target,
+ * unless the target already holds exactly the same content in which case the target, and its
+ * modified time, are left untouched.
+ *
+ * Output is encoded with the platform default charset, as the generators have always written.
+ *
+ * @author ryanhenderson
+ */
+public class GeneratedFileWriter extends Writer {
+
+  static Logger LOG = Logger.getLogger(GeneratedFileWriter.class);
+
+  private static final int BUFFER_SIZE = 16 * 1024;
+
+  private final File target;
+
+  private final File temp;
+
+  private final FileOutputStream tempOut;
+
+  private final DigestChannel channel;
+
+  private final Writer writer;
+
+  private boolean closed;
+
+  private boolean written;
+
+
+  /**
+   * @param dir
+   *          the folder to write to, created if needed
+   * @param name
+   *          the file name
+   * @throws IOException
+   *           if the temporary file can not be created
+   */
+  public GeneratedFileWriter(File dir, String name) throws IOException {
+    dir.mkdirs();
+    this.target = new File(dir, name);
+    this.temp = File.createTempFile("." + name, ".tmp", dir);
+    this.tempOut = new FileOutputStream(temp);
+    this.channel = new DigestChannel(tempOut.getChannel());
+    CharsetEncoder encoder = Charset.defaultCharset().newEncoder();
+    encoder.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.writer = Channels.newWriter(channel, encoder, BUFFER_SIZE);
+  }
+
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    writer.write(cbuf, off, len);
+  }
+
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    writer.write(str, off, len);
+  }
+
+
+  @Override
+  public void flush() throws IOException {
+    writer.flush();
+  }
+
+
+  /**
+   * Completes the file, replacing the target if its content changed.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      writer.close();
+    } finally {
+      tempOut.close();
+    }
+
+    byte[] digest = channel.digest();
+    if (target.isFile() && target.length() == channel.size() && Arrays.equals(digest, digestOf(target))) {
+      LOG.trace("Unchanged: " + target);
+      delete(temp);
+      return;
+    }
+
+    if (!temp.renameTo(target)) {
+      // some platforms will not rename over an existing file
+      delete(target);
+      if (!temp.renameTo(target)) {
+        delete(temp);
+        throw new IOException("Unable to move " + temp + " to " + target);
+      }
+    }
+    written = true;
+  }
+
+
+  /**
+   * Abandons the output, removing the temporary file. Does nothing once closed.
+   */
+  public void discard() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      tempOut.close();
+    } catch (IOException e) {
+      LOG.warn("Unable to close " + temp, e);
+    }
+    delete(temp);
+  }
+
+
+  /**
+   * @return true if the target was written, false if it was unchanged or the output discarded.
+   */
+  public boolean isWritten() {
+    return written;
+  }
+
+
+  public File getTarget() {
+    return target;
+  }
+
+
+  /**
+   * @return the number of bytes written so far, all of them once closed
+   */
+  public long getSize() {
+    return channel.size();
+  }
+
+
+  private static void delete(File file) {
+    if (file.exists() && !file.delete()) {
+      LOG.warn("Unable to delete " + file);
+    }
+  }
+
+
+  private static byte[] digestOf(File file) throws IOException {
+    MessageDigest digest = newDigest();
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        digest.update(buffer, 0, read);
+      }
+    } finally {
+      in.close();
+    }
+    return digest.digest();
+  }
+
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+
+  /**
+   * Writes to the file channel, hashing and counting the bytes on the way through.
+   */
+  private static class DigestChannel implements WritableByteChannel {
+
+    private final FileChannel out;
+
+    private final MessageDigest digest = newDigest();
+
+    private long size;
+
+
+    DigestChannel(FileChannel out) {
+      this.out = out;
+    }
+
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      ByteBuffer hashed = src.duplicate();
+      int written = 0;
+      while (src.hasRemaining()) {
+        written += out.write(src);
+      }
+      hashed.limit(hashed.position() + written);
+      digest.update(hashed);
+      size += written;
+      return written;
+    }
+
+
+    @Override
+    public boolean isOpen() {
+      return out.isOpen();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+
+
+    byte[] digest() {
+      return digest.digest();
+    }
+
+
+    long size() {
+      return size;
+    }
+  }
+
+}
@@ -7,48 +7,79 @@
  */
 package com.eighty8.inform8.lang;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.Map.Entry;
 
+import org.apache.log4j.Logger;
+
 import com.eighty8.inform8.db.table.Inform8Column;
 import com.eighty8.inform8.db.table.Inform8Table;
 import com.eighty8.inform8.menu.Menu;
 import com.eighty8.inform8.menu.MenuItem;
 import com.eighty8.inform8.util.StringUtils;
 
+/**
+ * Builds the language entries: the base entries, entries generated for every table and menu,
+ * and each language's own entries from the lang folder over them. The generated entries are also
+ * written to lang/jackentries.txt for translating.
+ *
+ * Every language shares the base and generated entries, holding only its own, see
+ * LanguageProperties.
+ *
+ * @author ryanhenderson
+ */
 public class LanguageGenerator {
 
+  static Logger LOG = Logger.getLogger(LanguageGenerator.class);
+
   private static final String TBL_PREFIX = "Tbl_";
   private final List<Inform8Table> tables;
-  private Properties properties;
 
-  private Map<String, Properties> languageProperties = new HashMap<String, Properties>();
+  /** the base and generated entries, shared by every language */
+  private Map<String, String> properties;
+
+  /** the languages by name, in name order */
+  private Map<String, LanguageProperties> languageProperties = new TreeMap<String, LanguageProperties>();
   private final Menu menu;
-  private FileWriter jackEntries;
+  private Writer jackEntries;
+
+  /** the names of the tables, to find the table of an entry */
+  private final Set<String> tableNames = new HashSet<String>();
+
+  /** the keys of each language by table, the general keys under "", built when first asked for */
+  private final Map<String, Map<String, List<String>>> segments = new HashMap<String, Map<String, List<String>>>();
 
 
   public LanguageGenerator(List<Inform8Table> tables, Menu menu, String configFolder) {
     this.tables = tables;
     this.menu = menu;
+    for (Inform8Table table : tables) {
+      tableNames.add(table.getName());
+    }
 
     File langFolder = new File(configFolder, "lang");
 
     try {
-      jackEntries = new FileWriter(new File(langFolder, "jackentries.txt"));
+      jackEntries = new BufferedWriter(new FileWriter(new File(langFolder, "jackentries.txt")), 64 * 1024);
     } catch (IOException e1) {
-      e1.printStackTrace();
+      LOG.error("Unable to write jackentries.txt", e1);
     }
 
     readDefaultEntries();
@@ -56,11 +87,15 @@ public class LanguageGenerator {
     generateMenuEntries();
 
     try {
-      jackEntries.flush();
-      jackEntries.close();
+      if (jackEntries != null) {
+        jackEntries.close();
+      }
     } catch (IOException e1) {
-      e1.printStackTrace();
+      LOG.error("Unable to write jackentries.txt", e1);
     }
+    jackEntries = null;
+
+    LanguageProperties shared = new LanguageProperties(properties);
 
     String[] langFiles = langFolder.list(new FilenameFilter() {
 
@@ -71,48 +106,64 @@ public class LanguageGenerator {
     });
 
     for (String langFileName : langFiles) {
-      Properties tempProps = new Properties();
-      addAll(properties, tempProps);
-      System.out.println("langFile:" + langFileName);
+      LOG.debug("langFile:" + langFileName);
 
       File theLangFile = new File(langFolder, langFileName);
-      Properties tempLangProps = new Properties();
+      Map<String, String> langEntries = new HashMap<String, String>();
       try {
-        tempLangProps.load(new FileInputStream(theLangFile));
-        addAll(tempLangProps, tempProps);
-
+        load(new FileInputStream(theLangFile), langEntries);
       } catch (FileNotFoundException e) {
-        // TODO Auto-generated catch block
-        e.printStackTrace();
+        LOG.error("Unable to read " + theLangFile, e);
       } catch (IOException e) {
-        // TODO Auto-generated catch block
-        e.printStackTrace();
+        LOG.error("Unable to read " + theLangFile, e);
       }
 
-      languageProperties.put(langFileName.split("\\.")[0], tempProps);
+      languageProperties.put(langFileName.split("\\.")[0], new LanguageProperties(shared, langEntries));
     }
+
+    logMemory(shared);
   }
 
 
-  public void addAll(Properties from, Properties into) {
-    for (Entry<Object, Object> entry : from.entrySet()) {
-      into.put(entry.getKey(), entry.getValue());
+  /**
+   * Reads the properties in, closing the stream.
+   */
+  private static void load(InputStream in, Map<String, String> into) throws IOException {
+    Properties temp = new Properties();
+    try {
+      temp.load(in);
+    } finally {
+      in.close();
+    }
+    for (Entry<Object, Object> entry : temp.entrySet()) {
+      into.put((String) entry.getKey(), (String) entry.getValue());
     }
   }
 
 
+  private void logMemory(LanguageProperties shared) {
+    if (!LOG.isInfoEnabled()) {
+      return;
+    }
+    StringBuilder report = new StringBuilder();
+    report.append("Language entries: ").append(shared.size()).append(" shared, ~").append(shared.estimateResidentBytes() / 1024).append("KB");
+    for (Map.Entry<String, LanguageProperties> lang : languageProperties.entrySet()) {
+      report.append(", ").append(lang.getKey()).append(" ").append(lang.getValue().getOverrideCount()).append(" own ~")
+          .append(lang.getValue().estimateResidentBytes() / 1024).append("KB");
+    }
+    LOG.info(report);
+  }
+
+
   /**
    * 
    */
   public void readDefaultEntries() {
     try {
 
-      properties = new Properties();
-
-      Properties temp = new Properties();
-      temp.load(LanguageGenerator.class.getResourceAsStream("/com/eighty8/inform8/lang/lang.base.properties"));
+      properties = new HashMap<String, String>();
 
-      addAll(temp, properties);
+      load(LanguageGenerator.class.getResourceAsStream("/com/eighty8/inform8/lang/lang.base.properties"), properties);
 
     } catch (FileNotFoundException e) {
       e.printStackTrace();
@@ -123,15 +174,23 @@ public class LanguageGenerator {
 
 
   public void addEntry(String key, String value) {
-    try {
-      jackEntries.write(key + "=" + saveConvert(value, false, false) + "\n");
-    } catch (IOException e) {
+    if (jackEntries != null) {
+      try {
+        jackEntries.write(key);
+        jackEntries.write('=');
+        jackEntries.write(saveConvert(value, false, false));
+        jackEntries.write('\n');
+      } catch (IOException e) {
+      }
     }
     properties.put(key, value);
   }
 
 
   public void addEmptyLine() {
+    if (jackEntries == null) {
+      return;
+    }
     try {
       jackEntries.write("\n");
     } catch (IOException e) {
@@ -140,6 +199,9 @@ public class LanguageGenerator {
 
 
   public void addComment(String comment) {
+    if (jackEntries == null) {
+      return;
+    }
     try {
       jackEntries.write("####################################" + "\n");
       jackEntries.write("# " + comment + "\n");
@@ -238,23 +300,91 @@ public class LanguageGenerator {
 
   /**
    * 
-   * @return
+   * @return the languages by name, in name order
    */
-  public Map<String, Properties> getLanguageProperties() {
+  public Map<String, LanguageProperties> getLanguageProperties() {
     return languageProperties;
   }
 
 
-  @SuppressWarnings("unchecked")
+  /**
+   * @return the keys of the language in order, unmodifiable
+   */
   public List<String> getSortedKeys(String languageKey) {
-    Set<Object> keys = languageProperties.get(languageKey).keySet();
+    return languageProperties.get(languageKey).getSortedKeys();
+  }
 
-    List sortedKeyList = new ArrayList();
-    sortedKeyList.addAll(keys);
 
-    Collections.sort(sortedKeyList);
+  /**
+   * The table of an entry is the longest table name that follows Tbl_ up to an _ or the end of
+   * the key, LangBundle.php finds the segment of a key the same way.
+   * 
+   * @return the table the entry belongs to, null for the general entries
+   */
+  public String getTableOf(String key) {
+    if (!key.startsWith(TBL_PREFIX)) {
+      return null;
+    }
+    String rest = key.substring(TBL_PREFIX.length());
+    String found = null;
+    for (int i = rest.indexOf('_');; i = rest.indexOf('_', i + 1)) {
+      String candidate = i < 0 ? rest : rest.substring(0, i);
+      if (tableNames.contains(candidate)) {
+        found = candidate;
+      }
+      if (i < 0) {
+        return found;
+      }
+    }
+  }
+
+
+  /**
+   * @return the keys of the language that belong to no table, in order, unmodifiable
+   */
+  public List<String> getGeneralKeys(String languageKey) {
+    return getTableKeys(languageKey, "");
+  }
 
-    return sortedKeyList;
+
+  /**
+   * @return the keys of the language that belong to the table, in order, unmodifiable
+   */
+  public List<String> getTableKeys(String languageKey, String table) {
+    List<String> keys = getSegments(languageKey).get(table);
+    if (keys == null) {
+      return Collections.emptyList();
+    }
+    return keys;
+  }
+
+
+  /**
+   * Splits the keys of the language by table once, the language templates are merged on several
+   * threads.
+   */
+  private synchronized Map<String, List<String>> getSegments(String languageKey) {
+    Map<String, List<String>> bySegment = segments.get(languageKey);
+    if (bySegment == null) {
+      bySegment = new HashMap<String, List<String>>();
+      for (String key : getSortedKeys(languageKey)) {
+        String table = getTableOf(key);
+        if (table == null) {
+          table = "";
+        }
+        List<String> keys = bySegment.get(table);
+        if (keys == null) {
+          keys = new ArrayList<String>();
+          bySegment.put(table, keys);
+        }
+        keys.add(key);
+      }
+      for (Map.Entry<String, List<String>> segment : bySegment.entrySet()) {
+        segment.setValue(Collections.unmodifiableList(segment.getValue()));
+      }
+      segments.put(languageKey, bySegment);
+    }
+    return bySegment;
   }
 
 
@@ -264,7 +394,7 @@ public class LanguageGenerator {
     if (bufLen < 0) {
       bufLen = Integer.MAX_VALUE;
     }
-    StringBuffer outBuffer = new StringBuffer(bufLen);
+    StringBuilder outBuffer = new StringBuilder(bufLen);
 
     for (int x = 0; x < len; x++) {
       char aChar = theString.charAt(x);
@@ -0,0 +1,225 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.lang;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The entries of one language: its own entries layered over the entries shared by every
+ * language. Only the entries that differ from the shared ones are held per language, and the
+ * keys are kept sorted, so iterating in key order costs no sort.
+ *
+ * Read only. Iteration, keySet() and entrySet() are in key order.
+ *
+ * @author ryanhenderson
+ */
+public class LanguageProperties extends AbstractMap<String, String> {
+
+  /** rough size of a HashMap entry and its two String headers, for the memory report */
+  private static final int ENTRY_BYTES = 32 + 2 * 40;
+
+  private final Map<String, String> base;
+
+  private final Map<String, String> overrides;
+
+  private final String[] sortedKeys;
+
+  private final List<String> sortedKeyList;
+
+  private final boolean ownKeys;
+
+  /** true for the shared entries, which hold the base */
+  private final boolean shared;
+
+  private Set<Map.Entry<String, String>> entrySet;
+
+
+  /**
+   * The shared entries, with no language entries over them.
+   */
+  LanguageProperties(Map<String, String> base) {
+    this.base = base;
+    this.overrides = Collections.emptyMap();
+    this.sortedKeys = base.keySet().toArray(new String[base.size()]);
+    Arrays.sort(sortedKeys);
+    this.sortedKeyList = Collections.unmodifiableList(Arrays.asList(sortedKeys));
+    this.ownKeys = true;
+    this.shared = true;
+  }
+
+
+  /**
+   * A language over the shared entries.
+   *
+   * @param shared
+   *          the shared entries
+   * @param entries
+   *          the entries of the language, those equal to the shared entry are not held
+   */
+  LanguageProperties(LanguageProperties shared, Map<String, String> entries) {
+    this.base = shared.base;
+    this.shared = false;
+
+    Map<String, String> own = new HashMap<String, String>();
+    int added = 0;
+    for (Map.Entry<String, String> entry : entries.entrySet()) {
+      String baseValue = base.get(entry.getKey());
+      if (!entry.getValue().equals(baseValue)) {
+        own.put(entry.getKey(), entry.getValue());
+        if (baseValue == null) {
+          added++;
+        }
+      }
+    }
+    this.overrides = own.isEmpty() ? Collections.<String, String> emptyMap() : own;
+
+    if (added == 0) {
+      // the same keys as the shared entries, so share their index
+      this.sortedKeys = shared.sortedKeys;
+      this.sortedKeyList = shared.sortedKeyList;
+      this.ownKeys = false;
+    } else {
+      String[] addedKeys = new String[added];
+      int i = 0;
+      for (String key : own.keySet()) {
+        if (!base.containsKey(key)) {
+          addedKeys[i++] = key;
+        }
+      }
+      Arrays.sort(addedKeys);
+      this.sortedKeys = merge(shared.sortedKeys, addedKeys);
+      this.sortedKeyList = Collections.unmodifiableList(Arrays.asList(sortedKeys));
+      this.ownKeys = true;
+    }
+  }
+
+
+  private static String[] merge(String[] a, String[] b) {
+    String[] merged = new String[a.length + b.length];
+    int i = 0, j = 0, k = 0;
+    while (i < a.length && j < b.length) {
+      merged[k++] = a[i].compareTo(b[j]) <= 0 ? a[i++] : b[j++];
+    }
+    while (i < a.length) {
+      merged[k++] = a[i++];
+    }
+    while (j < b.length) {
+      merged[k++] = b[j++];
+    }
+    return merged;
+  }
+
+
+  @Override
+  public String get(Object key) {
+    String value = overrides.get(key);
+    return value != null ? value : base.get(key);
+  }
+
+
+  /**
+   * As Properties.getProperty.
+   */
+  public String getProperty(String key) {
+    return get(key);
+  }
+
+
+  @Override
+  public boolean containsKey(Object key) {
+    return overrides.containsKey(key) || base.containsKey(key);
+  }
+
+
+  @Override
+  public int size() {
+    return sortedKeys.length;
+  }
+
+
+  /**
+   * @return the keys in order, unmodifiable
+   */
+  public List<String> getSortedKeys() {
+    return sortedKeyList;
+  }
+
+
+  /**
+   * @return the number of entries held by this language rather than shared
+   */
+  public int getOverrideCount() {
+    return overrides.size();
+  }
+
+
+  /**
+   * A rough count of the bytes held by this language alone: its own entries and, if it adds
+   * keys, its own key index. For the shared entries, the base entries and their index.
+   */
+  public long estimateResidentBytes() {
+    long bytes = 0;
+    for (Map.Entry<String, String> entry : (shared ? base : overrides).entrySet()) {
+      bytes += ENTRY_BYTES + 2L * (entry.getKey().length() + entry.getValue().length());
+    }
+    if (ownKeys) {
+      bytes += 16 + 4L * sortedKeys.length;
+    }
+    return bytes;
+  }
+
+
+  @Override
+  public Set<Map.Entry<String, String>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new AbstractSet<Map.Entry<String, String>>() {
+        @Override
+        public Iterator<Map.Entry<String, String>> iterator() {
+          return new Iterator<Map.Entry<String, String>>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+              return next < sortedKeys.length;
+            }
+
+            @Override
+            public Map.Entry<String, String> next() {
+              if (next >= sortedKeys.length) {
+                throw new NoSuchElementException();
+              }
+              String key = sortedKeys[next++];
+              return new SimpleImmutableEntry<String, String>(key, get(key));
+            }
+
+            @Override
+            public void remove() {
+              throw new UnsupportedOperationException();
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return sortedKeys.length;
+        }
+      };
+    }
+    return entrySet;
+  }
+
+}
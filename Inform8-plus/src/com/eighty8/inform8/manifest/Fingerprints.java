@@ -0,0 +1,330 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.manifest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.eighty8.inform8.db.table.Inform8Column;
+import com.eighty8.inform8.db.table.Inform8Table;
+import com.eighty8.inform8.displaysettings.DisplaySettings;
+
+/**
+ * Calculates the fingerprints of the generation inputs: the tables of the model, the generation
+ * config and the templates.
+ *
+ * A table fingerprint covers the table, its columns, their labels and properties, and the tables
+ * it is linked to by foreign keys in either direction, as the table templates navigate to them.
+ *
+ * @author ryanhenderson
+ */
+public class Fingerprints {
+
+  /** config entries already applied to the tables, covered by the table fingerprints */
+  private static final String[] MODEL_CONFIG_PREFIXES = { "fieldlabel.", "fieldprop.", "tablelabel.", "tableprop." };
+
+  private final Map<String, String> tableFingerprints = new HashMap<String, String>();
+
+  private final Map<String, String> templateFingerprints = new HashMap<String, String>();
+
+  private final String configFingerprint;
+
+  private final List<File> templateFolders = new ArrayList<File>();
+
+  private String includesFingerprint;
+
+
+  /**
+   * @param tables
+   *          all tables of the model, with the config labels and properties applied
+   * @param config
+   *          all generation config properties
+   */
+  public Fingerprints(List<Inform8Table> tables, Properties config) {
+    this.configFingerprint = fingerprintConfig(config);
+
+    String[] paths = config.getProperty("file.resource.loader.path", "").split(",");
+    for (String path : paths) {
+      if (path.trim().length() > 0) {
+        templateFolders.add(new File(path.trim()));
+      }
+    }
+
+    // tables linked by a FK are part of each others fingerprint.
+    Map<String, String> descriptions = new HashMap<String, String>();
+    Map<String, TreeSet<String>> linked = new HashMap<String, TreeSet<String>>();
+    for (Inform8Table table : tables) {
+      descriptions.put(table.getName(), describe(table));
+      linked.put(table.getName(), new TreeSet<String>());
+    }
+    for (Inform8Table table : tables) {
+      for (Inform8Column col : table.getColumns()) {
+        if (col.getChildForeignKey() != null && col.getChildForeignKey().getMasterTable() != null) {
+          String master = col.getChildForeignKey().getMasterTable().getName();
+          linked.get(table.getName()).add(master);
+          if (linked.containsKey(master)) {
+            linked.get(master).add(table.getName());
+          }
+        }
+      }
+    }
+    for (Inform8Table table : tables) {
+      StringBuilder fp = new StringBuilder(descriptions.get(table.getName()));
+      for (String other : linked.get(table.getName())) {
+        fp.append("linked:").append(descriptions.containsKey(other) ? descriptions.get(other) : other);
+      }
+      tableFingerprints.put(table.getName(), hash(fp.toString()));
+    }
+  }
+
+
+  public String getTableFingerprint(Inform8Table table) {
+    return tableFingerprints.get(table.getName());
+  }
+
+
+  public String getConfigFingerprint() {
+    return configFingerprint;
+  }
+
+
+  /**
+   * The fingerprint of the whole model and config, the same for every run that generates from
+   * the same inputs.
+   */
+  public String getModelFingerprint() {
+    List<String> all = new ArrayList<String>();
+    all.add(configFingerprint);
+    all.addAll(new TreeMap<String, String>(tableFingerprints).values());
+    return combine(all);
+  }
+
+
+  /**
+   * The fingerprint of a template, covering its own source and every include (.inc.vm) it may
+   * parse.
+   *
+   * @param template
+   *          the template name, relative to the template folders
+   */
+  public synchronized String getTemplateFingerprint(String template) throws IOException {
+    String fp = templateFingerprints.get(template);
+    if (fp == null) {
+      if (includesFingerprint == null) {
+        includesFingerprint = fingerprintIncludes();
+      }
+      File source = findTemplate(template);
+      fp = hash((source == null ? "missing:" + template : hash(readBytes(source))) + includesFingerprint);
+      templateFingerprints.put(template, fp);
+    }
+    return fp;
+  }
+
+
+  /**
+   * Combines several fingerprints into one.
+   */
+  public static String combine(List<String> fingerprints) {
+    StringBuilder all = new StringBuilder();
+    for (String fp : fingerprints) {
+      all.append(fp).append(';');
+    }
+    return hash(all.toString());
+  }
+
+
+  private File findTemplate(String template) {
+    for (File folder : templateFolders) {
+      File source = new File(folder, template);
+      if (source.isFile()) {
+        return source;
+      }
+    }
+    return null;
+  }
+
+
+  private String fingerprintIncludes() throws IOException {
+    TreeMap<String, File> includes = new TreeMap<String, File>();
+    for (int i = templateFolders.size() - 1; i >= 0; i--) {
+      // earlier folders override later ones, as with the velocity resource loader
+      findIncludes(templateFolders.get(i), "", includes);
+    }
+    StringBuilder all = new StringBuilder();
+    for (Map.Entry<String, File> include : includes.entrySet()) {
+      all.append(include.getKey()).append('=').append(hash(readBytes(include.getValue()))).append(';');
+    }
+    return hash(all.toString());
+  }
+
+
+  private void findIncludes(File folder, String path, Map<String, File> includes) {
+    File[] files = folder.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (file.isDirectory()) {
+        findIncludes(file, path + file.getName() + "/", includes);
+      } else if (file.getName().endsWith(".inc.vm")) {
+        includes.put(path + file.getName(), file);
+      }
+    }
+  }
+
+
+  private static String fingerprintConfig(Properties config) {
+    TreeMap<String, String> sorted = new TreeMap<String, String>();
+    for (String key : config.stringPropertyNames()) {
+      if (!isModelConfig(key)) {
+        sorted.put(key, config.getProperty(key));
+      }
+    }
+    return hash(sorted.toString());
+  }
+
+
+  private static boolean isModelConfig(String key) {
+    String lower = key.toLowerCase();
+    for (String prefix : MODEL_CONFIG_PREFIXES) {
+      if (lower.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  private static String describe(Inform8Table table) {
+    StringBuilder desc = new StringBuilder();
+    desc.append("table:").append(table.getName()).append(';');
+    describe(table.getSettings(), desc);
+    if (table.getPrimaryKey() != null) {
+      desc.append("pk:");
+      describe(table.getPrimaryKey(), desc);
+    }
+    for (Inform8Column col : table.getColumns()) {
+      desc.append("col:");
+      describe(col, desc);
+    }
+    return desc.toString();
+  }
+
+
+  private static void describe(Inform8Column col, StringBuilder desc) {
+    desc.append(col.getName()).append(';');
+    desc.append("type:").append(typeName(col.getType())).append(';');
+    desc.append("default:").append(col.getDefaultValue()).append(';');
+    if (col.getChildForeignKey() != null) {
+      desc.append("fk:").append(col.getChildForeignKey().getMasterTable().getName()).append('.')
+          .append(col.getChildForeignKey().getMasterColumnName()).append(';');
+    }
+    describe(col.getSettings(), desc);
+  }
+
+
+  private static void describe(DisplaySettings settings, StringBuilder desc) {
+    if (settings == null) {
+      return;
+    }
+    Collection<?> labels = settings.getLabels();
+    if (labels != null) {
+      desc.append("labels:").append(new TreeSet<String>(toStrings(labels))).append(';');
+    }
+    Map<?, ?> properties = settings.getProperties();
+    if (properties != null) {
+      TreeMap<String, String> sorted = new TreeMap<String, String>();
+      for (Map.Entry<?, ?> entry : properties.entrySet()) {
+        sorted.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+      }
+      desc.append("props:").append(sorted).append(';');
+    }
+  }
+
+
+  private static List<String> toStrings(Collection<?> values) {
+    List<String> strings = new ArrayList<String>();
+    for (Object value : values) {
+      strings.add(String.valueOf(value));
+    }
+    return strings;
+  }
+
+
+  /**
+   * The column types expose their name as the templates use it, $col.type.name.
+   */
+  private static String typeName(Object type) {
+    if (type == null) {
+      return "";
+    }
+    try {
+      Method getName = type.getClass().getMethod("getName");
+      return type.getClass().getName() + ":" + getName.invoke(type);
+    } catch (Exception e) {
+      return type.getClass().getName();
+    }
+  }
+
+
+  private static byte[] readBytes(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] content = new byte[(int) file.length()];
+      int read = 0;
+      while (read < content.length) {
+        int count = in.read(content, read, content.length - read);
+        if (count < 0) {
+          break;
+        }
+        read += count;
+      }
+      return content;
+    } finally {
+      in.close();
+    }
+  }
+
+
+  public static String hash(String value) {
+    try {
+      return hash(value.getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+
+  public static String hash(byte[] value) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(value);
+      StringBuilder hex = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
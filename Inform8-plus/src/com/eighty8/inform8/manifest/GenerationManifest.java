@@ -0,0 +1,183 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.manifest;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Records the fingerprint of the inputs used to produce each generated file. A later run can
+ * skip any output whose inputs have not changed, and remove outputs that are no longer
+ * produced.
+ *
+ * The manifest is stored in the generation output folder, one 'path=fingerprint' line per
+ * output with the path relative to the output folder.
+ *
+ * @author ryanhenderson
+ */
+public class GenerationManifest {
+
+  static Logger LOG = Logger.getLogger(GenerationManifest.class);
+
+  public static final String MANIFEST_FILE_NAME = ".inform8-manifest";
+
+  private final File outDir;
+
+  private final File manifestFile;
+
+  /** fingerprints from the previous run */
+  private final Map<String, String> previous = new HashMap<String, String>();
+
+  /** fingerprints of the outputs produced, or kept, by this run */
+  private final Map<String, String> current = new ConcurrentHashMap<String, String>();
+
+  private final AtomicInteger generated = new AtomicInteger();
+  private final AtomicInteger skipped = new AtomicInteger();
+
+
+  public GenerationManifest(File outDir) throws IOException {
+    this(outDir, MANIFEST_FILE_NAME);
+  }
+
+
+  /**
+   * @param fileName
+   *          the manifest file in the output folder, each shard of a sharded run keeps its own
+   */
+  public GenerationManifest(File outDir, String fileName) throws IOException {
+    this.outDir = outDir;
+    this.manifestFile = new File(outDir, fileName);
+    load();
+  }
+
+
+  private void load() throws IOException {
+    if (!manifestFile.exists()) {
+      LOG.info("No generation manifest found, generating all outputs");
+      return;
+    }
+    BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(manifestFile), "UTF-8"));
+    try {
+      String line;
+      while ((line = in.readLine()) != null) {
+        int split = line.lastIndexOf('=');
+        if (split > 0) {
+          previous.put(line.substring(0, split), line.substring(split + 1));
+        }
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+
+  /**
+   * @param output
+   *          the generated file
+   * @param fingerprint
+   *          the fingerprint of the inputs the file would be generated from
+   * @return true if the file exists and was generated from the same inputs last run.
+   */
+  public boolean isCurrent(File output, String fingerprint) {
+    return fingerprint.equals(previous.get(key(output))) && output.exists();
+  }
+
+
+  /**
+   * Records a file generated by this run.
+   */
+  public void generated(File output, String fingerprint) {
+    current.put(key(output), fingerprint);
+    generated.incrementAndGet();
+  }
+
+
+  /**
+   * Records a file that was up to date and kept from the previous run.
+   */
+  public void skipped(File output, String fingerprint) {
+    current.put(key(output), fingerprint);
+    skipped.incrementAndGet();
+  }
+
+
+  /**
+   * Deletes the outputs recorded by the previous run that were not produced by this run.
+   *
+   * @return the files removed
+   */
+  public List<File> removeOrphans() {
+    List<File> removed = new ArrayList<File>();
+    for (String path : previous.keySet()) {
+      if (!current.containsKey(path)) {
+        File orphan = new File(outDir, path);
+        if (orphan.exists() && orphan.delete()) {
+          LOG.debug("Removed orphaned output: " + path);
+          removed.add(orphan);
+        }
+      }
+    }
+    return removed;
+  }
+
+
+  /**
+   * Writes the fingerprints of this run, sorted by path, replacing the previous manifest.
+   */
+  public void save() throws IOException {
+    outDir.mkdirs();
+    BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(manifestFile), "UTF-8"));
+    try {
+      for (Map.Entry<String, String> entry : new TreeMap<String, String>(current).entrySet()) {
+        out.write(entry.getKey());
+        out.write('=');
+        out.write(entry.getValue());
+        out.write('\n');
+      }
+    } finally {
+      out.close();
+    }
+    LOG.info("Generation manifest: " + generated.get() + " generated, " + skipped.get() + " unchanged");
+  }
+
+
+  public int getGeneratedCount() {
+    return generated.get();
+  }
+
+
+  public int getSkippedCount() {
+    return skipped.get();
+  }
+
+
+  private String key(File output) {
+    String base = outDir.getAbsolutePath();
+    String path = output.getAbsolutePath();
+    if (path.startsWith(base + File.separator)) {
+      path = path.substring(base.length() + 1);
+    }
+    return path.replace(File.separatorChar, '/');
+  }
+
+}
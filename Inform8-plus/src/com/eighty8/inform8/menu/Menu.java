@@ -9,7 +9,9 @@ package com.eighty8.inform8.menu;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import com.eighty8.inform8.config.PlusGeneratorConfig;
 import com.eighty8.inform8.db.table.Inform8Table;
@@ -18,10 +20,17 @@ public class Menu {
 
   private final List<MenuItem> menus;
 
+  /** lower case names of every table in the menu */
+  private final Set<String> tableNames = new HashSet<String>();
+
 
   public Menu(List<MenuItem> menus) {
     super();
     this.menus = menus == null ? new ArrayList<MenuItem>() : menus;
+    for (MenuItem mi : this.menus) {
+      tableNames.addAll(mi.getTableNames());
+    }
+    Collections.sort(this.menus);
   }
 
 
@@ -35,23 +44,23 @@ public class Menu {
         MenuItem menuItem = new MenuItem(table.getName());
         menuItem.addSubMenu(new MenuItem(table.getName()));
         menus.add(menuItem);
+        tableNames.addAll(menuItem.getTableNames());
       }
     }
+    Collections.sort(menus);
   }
 
 
   private boolean isTableInMenu(Inform8Table table) {
-    for (MenuItem mi : menus) {
-      if (mi.contains(table)) {
-        return true;
-      }
-    }
-    return false;
+    return tableNames.contains(table.getName().toLowerCase());
   }
 
 
+  /**
+   * The menus, sorted by menu order. Sorting happens as the menus change so that reading the
+   * menus from concurrently running templates never modifies the list.
+   */
   public List<MenuItem> getMenus() {
-    Collections.sort(menus);
     return menus;
   }
 
@@ -73,6 +82,7 @@ public class Menu {
         findMenuItem.setMenuOrder(i);
       }
     }
+    Collections.sort(menus);
   }
 
 }
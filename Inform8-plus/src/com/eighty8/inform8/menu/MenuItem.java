@@ -9,7 +9,9 @@ package com.eighty8.inform8.menu;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
 
@@ -21,6 +23,9 @@ public class MenuItem implements Comparable<MenuItem> {
   private final String name;
   List<MenuItem> subMenus = new ArrayList<MenuItem>();
 
+  /** lower case names of this item and all its sub menus */
+  private final Set<String> tableNames = new HashSet<String>();
+
   /**
    * For presentation in the menu. 0 is the highest Default Integer.MAX_VALUE-100
    */
@@ -29,17 +34,22 @@ public class MenuItem implements Comparable<MenuItem> {
 
   public MenuItem(String name) {
     this.name = name;
+    tableNames.add(name.toLowerCase());
   }
 
 
   public List<MenuItem> getSubMenus() {
-    Collections.sort(subMenus);
     return subMenus;
   }
 
 
+  /**
+   * Adds a sub menu, along with any sub menus it already holds.
+   */
   public void addSubMenu(MenuItem m) {
     subMenus.add(m);
+    tableNames.addAll(m.tableNames);
+    Collections.sort(subMenus);
   }
 
 
@@ -49,15 +59,15 @@ public class MenuItem implements Comparable<MenuItem> {
 
 
   public boolean contains(Inform8Table t) {
-    if (name.equalsIgnoreCase(t.getName())) {
-      return true;
-    }
-    for (MenuItem m : subMenus) {
-      if (m.contains(t)) {
-        return true;
-      }
-    }
-    return false;
+    return tableNames.contains(t.getName().toLowerCase());
+  }
+
+
+  /**
+   * @return the lower case names of this item and all its sub menus
+   */
+  Set<String> getTableNames() {
+    return tableNames;
   }
 
 
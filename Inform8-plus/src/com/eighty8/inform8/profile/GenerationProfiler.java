@@ -0,0 +1,230 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.profile;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records how long each template merge takes, for each table, with the bytes it wrote, the
+ * memory it allocated and the time spent completing its file.
+ *
+ * A merge is timed with a Span:
+ *
+ * <pre>
+ * Span span = profiler.start(&quot;table&quot;, templateName, tableName);
+ * ...merge...
+ * span.merged();
+ * ...close the file...
+ * span.end(bytes);
+ * </pre>
+ *
+ * The DISABLED profiler hands out a span that does nothing, so an unprofiled run only pays for
+ * a few empty calls. Spans may be used from any thread.
+ *
+ * @author ryanhenderson
+ */
+public class GenerationProfiler {
+
+  /** Records nothing */
+  public static final GenerationProfiler DISABLED = new GenerationProfiler(false);
+
+  /** Category of the spans timing a whole generator */
+  public static final String PHASE = "phase";
+
+  private final boolean enabled;
+
+  private final long startNanos = System.nanoTime();
+
+  private final ConcurrentLinkedQueue<Sample> samples = new ConcurrentLinkedQueue<Sample>();
+
+  private final com.sun.management.ThreadMXBean allocations;
+
+
+  /**
+   * An enabled profiler, timed from now.
+   */
+  public GenerationProfiler() {
+    this(true);
+  }
+
+
+  private GenerationProfiler(boolean enabled) {
+    this.enabled = enabled;
+    this.allocations = enabled ? allocationBean() : null;
+  }
+
+
+  private static com.sun.management.ThreadMXBean allocationBean() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+      if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+        return sunBean;
+      }
+    }
+    return null;
+  }
+
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+
+  /**
+   * Starts timing.
+   *
+   * @param category
+   *          the generator, or PHASE for a whole generator
+   * @param name
+   *          the template, or the generator for a PHASE
+   * @param table
+   *          the table merged, the language for a language file, null for none
+   * @return the span to finish when done, does nothing if the profiler is disabled
+   */
+  public Span start(String category, String name, String table) {
+    if (!enabled) {
+      return Span.NONE;
+    }
+    return new Span(this, category, name, table);
+  }
+
+
+  /**
+   * @return the samples recorded so far, in the order they finished
+   */
+  public List<Sample> getSamples() {
+    return new ArrayList<Sample>(samples);
+  }
+
+
+  /**
+   * @return when the profiler was created, on the System.nanoTime() clock
+   */
+  public long getStartNanos() {
+    return startNanos;
+  }
+
+
+  /**
+   * @return the bytes allocated by the current thread so far, or -1 if not known
+   */
+  long allocatedBytes() {
+    if (allocations == null) {
+      return -1;
+    }
+    return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+
+  void record(Sample sample) {
+    samples.add(sample);
+  }
+
+
+  /**
+   * One merge in progress. Not shared between threads.
+   */
+  public static class Span {
+
+    static final Span NONE = new Span(null, null, null, null);
+
+    private final GenerationProfiler profiler;
+    private final String category;
+    private final String name;
+    private final String table;
+    private final long start;
+    private final long startAllocated;
+    private long merged;
+
+
+    Span(GenerationProfiler profiler, String category, String name, String table) {
+      this.profiler = profiler;
+      this.category = category;
+      this.name = name;
+      this.table = table;
+      this.start = profiler == null ? 0 : System.nanoTime();
+      this.startAllocated = profiler == null ? -1 : profiler.allocatedBytes();
+    }
+
+
+    /**
+     * Marks the end of the merge, the rest of the span is writing the file.
+     */
+    public void merged() {
+      if (profiler != null) {
+        merged = System.nanoTime();
+      }
+    }
+
+
+    /**
+     * Finishes the span and records it.
+     *
+     * @param bytes
+     *          the bytes written, -1 if none
+     */
+    public void end(long bytes) {
+      if (profiler == null) {
+        return;
+      }
+      long end = System.nanoTime();
+      long mergeEnd = merged == 0 ? end : merged;
+      long allocated = startAllocated < 0 ? -1 : profiler.allocatedBytes() - startAllocated;
+      profiler.record(new Sample(category, name, table, Thread.currentThread().getName(), start - profiler.startNanos,
+          mergeEnd - start, end - mergeEnd, bytes, allocated));
+    }
+  }
+
+
+  /**
+   * A finished span.
+   */
+  public static class Sample {
+
+    public final String category;
+    public final String name;
+    public final String table;
+    public final String thread;
+
+    /** start, relative to the start of the profiler */
+    public final long startNanos;
+    public final long mergeNanos;
+    public final long writeNanos;
+
+    /** bytes written, -1 if none */
+    public final long bytes;
+
+    /** bytes allocated by the thread, -1 if not known */
+    public final long allocatedBytes;
+
+
+    Sample(String category, String name, String table, String thread, long startNanos, long mergeNanos, long writeNanos, long bytes,
+        long allocatedBytes) {
+      this.category = category;
+      this.name = name;
+      this.table = table;
+      this.thread = thread;
+      this.startNanos = startNanos;
+      this.mergeNanos = mergeNanos;
+      this.writeNanos = writeNanos;
+      this.bytes = bytes;
+      this.allocatedBytes = allocatedBytes;
+    }
+
+
+    public long getTotalNanos() {
+      return mergeNanos + writeNanos;
+    }
+  }
+
+}
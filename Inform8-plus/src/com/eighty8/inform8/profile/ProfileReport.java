@@ -0,0 +1,289 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.profile;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.eighty8.inform8.profile.GenerationProfiler.Sample;
+
+/**
+ * Writes the samples of a profiled run:
+ *
+ * profile.txt, the time of each generator, the templates sorted by total time, then the slowest
+ * single merges.
+ * profile.json, the same and every sample.
+ * profile.trace.json, optionally, every sample as a Chrome trace event, to open in
+ * chrome://tracing or Perfetto as a timeline of the worker threads.
+ *
+ * @author ryanhenderson
+ */
+public class ProfileReport {
+
+  static Logger LOG = Logger.getLogger(ProfileReport.class);
+
+  /** the number of single merges listed in the text report */
+  private static final int SLOWEST = 50;
+
+  private final List<Sample> samples;
+
+  private final List<Sample> phases = new ArrayList<Sample>();
+
+  private final List<TemplateTotal> totals;
+
+
+  public ProfileReport(GenerationProfiler profiler) {
+    this.samples = profiler.getSamples();
+    for (Sample sample : samples) {
+      if (GenerationProfiler.PHASE.equals(sample.category)) {
+        phases.add(sample);
+      }
+    }
+    this.totals = totals(samples);
+  }
+
+
+  /**
+   * Writes the reports into the folder, creating it if needed.
+   *
+   * @param trace
+   *          true to also write the Chrome trace
+   */
+  public void write(File folder, boolean trace) throws IOException {
+    folder.mkdirs();
+    writeText(new File(folder, "profile.txt"));
+    writeJson(new File(folder, "profile.json"));
+    if (trace) {
+      writeTrace(new File(folder, "profile.trace.json"));
+    }
+    LOG.info("Profile of " + samples.size() + " merges written to " + folder);
+  }
+
+
+  /**
+   * The total time, bytes and allocation of one template over all its merges.
+   */
+  static class TemplateTotal {
+
+    final String category;
+    final String name;
+    int count;
+    long mergeNanos;
+    long writeNanos;
+    long bytes;
+    long allocatedBytes;
+    long maxNanos;
+    String maxTable;
+
+
+    TemplateTotal(String category, String name) {
+      this.category = category;
+      this.name = name;
+    }
+
+
+    void add(Sample sample) {
+      count++;
+      mergeNanos += sample.mergeNanos;
+      writeNanos += sample.writeNanos;
+      bytes += Math.max(0, sample.bytes);
+      allocatedBytes += Math.max(0, sample.allocatedBytes);
+      if (sample.getTotalNanos() > maxNanos) {
+        maxNanos = sample.getTotalNanos();
+        maxTable = sample.table;
+      }
+    }
+
+
+    long totalNanos() {
+      return mergeNanos + writeNanos;
+    }
+  }
+
+
+  private static List<TemplateTotal> totals(List<Sample> samples) {
+    Map<String, TemplateTotal> byTemplate = new LinkedHashMap<String, TemplateTotal>();
+    for (Sample sample : samples) {
+      if (GenerationProfiler.PHASE.equals(sample.category)) {
+        continue;
+      }
+      String key = sample.category + ":" + sample.name;
+      TemplateTotal total = byTemplate.get(key);
+      if (total == null) {
+        byTemplate.put(key, total = new TemplateTotal(sample.category, sample.name));
+      }
+      total.add(sample);
+    }
+    List<TemplateTotal> totals = new ArrayList<TemplateTotal>(byTemplate.values());
+    Collections.sort(totals, new Comparator<TemplateTotal>() {
+      @Override
+      public int compare(TemplateTotal a, TemplateTotal b) {
+        return compareLongs(b.totalNanos(), a.totalNanos());
+      }
+    });
+    return totals;
+  }
+
+
+  private void writeText(File file) throws IOException {
+    PrintWriter out = open(file);
+    try {
+      for (Sample phase : phases) {
+        out.println(String.format("%-10s %10.1f ms", phase.name, ms(phase.getTotalNanos())));
+      }
+      out.println();
+      out.println(String.format("%-10s %-60s %7s %10s %10s %10s %12s %12s  %s", "category", "template", "merges", "total ms", "merge ms",
+          "write ms", "bytes", "allocated", "slowest table"));
+      for (TemplateTotal total : totals) {
+        out.println(String.format("%-10s %-60s %7d %10.1f %10.1f %10.1f %12d %12d  %s (%.1f ms)", total.category, total.name, total.count,
+            ms(total.totalNanos()), ms(total.mergeNanos), ms(total.writeNanos), total.bytes, total.allocatedBytes,
+            total.maxTable == null ? "-" : total.maxTable, ms(total.maxNanos)));
+      }
+
+      List<Sample> slowest = new ArrayList<Sample>(samples);
+      slowest.removeAll(phases);
+      Collections.sort(slowest, new Comparator<Sample>() {
+        @Override
+        public int compare(Sample a, Sample b) {
+          return compareLongs(b.getTotalNanos(), a.getTotalNanos());
+        }
+      });
+
+      out.println();
+      out.println("Slowest merges");
+      for (Sample sample : slowest.subList(0, Math.min(SLOWEST, slowest.size()))) {
+        out.println(String.format("%10.1f ms  %-60s %-30s %10d bytes  %s", ms(sample.getTotalNanos()), sample.name,
+            sample.table == null ? "-" : sample.table, sample.bytes, sample.thread));
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+
+  private void writeJson(File file) throws IOException {
+    PrintWriter out = open(file);
+    try {
+      out.println("{");
+      out.println("  \"phases\": [");
+      for (int i = 0; i < phases.size(); i++) {
+        Sample phase = phases.get(i);
+        out.print("    {\"phase\": " + json(phase.name) + ", \"startNanos\": " + phase.startNanos + ", \"totalNanos\": " + phase.getTotalNanos() + "}");
+        out.println(i < phases.size() - 1 ? "," : "");
+      }
+      out.println("  ],");
+      out.println("  \"templates\": [");
+      for (int i = 0; i < totals.size(); i++) {
+        TemplateTotal total = totals.get(i);
+        out.print("    {\"category\": " + json(total.category) + ", \"template\": " + json(total.name) + ", \"merges\": " + total.count
+            + ", \"totalNanos\": " + total.totalNanos() + ", \"mergeNanos\": " + total.mergeNanos + ", \"writeNanos\": " + total.writeNanos
+            + ", \"bytes\": " + total.bytes + ", \"allocatedBytes\": " + total.allocatedBytes + ", \"slowestTable\": " + json(total.maxTable)
+            + ", \"slowestNanos\": " + total.maxNanos + "}");
+        out.println(i < totals.size() - 1 ? "," : "");
+      }
+      out.println("  ],");
+      out.println("  \"samples\": [");
+      for (int i = 0; i < samples.size(); i++) {
+        Sample sample = samples.get(i);
+        out.print("    {\"category\": " + json(sample.category) + ", \"template\": " + json(sample.name) + ", \"table\": " + json(sample.table)
+            + ", \"thread\": " + json(sample.thread) + ", \"startNanos\": " + sample.startNanos + ", \"mergeNanos\": " + sample.mergeNanos
+            + ", \"writeNanos\": " + sample.writeNanos + ", \"bytes\": " + sample.bytes + ", \"allocatedBytes\": " + sample.allocatedBytes + "}");
+        out.println(i < samples.size() - 1 ? "," : "");
+      }
+      out.println("  ]");
+      out.println("}");
+    } finally {
+      out.close();
+    }
+  }
+
+
+  /**
+   * Writes the samples in the Chrome trace event format, a complete ("X") event for each merge
+   * and a name for each thread.
+   */
+  private void writeTrace(File file) throws IOException {
+    Map<String, Integer> threadIds = new HashMap<String, Integer>();
+    PrintWriter out = open(file);
+    try {
+      out.println("{\"traceEvents\": [");
+      boolean first = true;
+      for (Sample sample : samples) {
+        Integer tid = threadIds.get(sample.thread);
+        if (tid == null) {
+          threadIds.put(sample.thread, tid = threadIds.size() + 1);
+          out.println((first ? "" : ",") + "{\"name\": \"thread_name\", \"ph\": \"M\", \"pid\": 1, \"tid\": " + tid
+              + ", \"args\": {\"name\": " + json(sample.thread) + "}}");
+          first = false;
+        }
+        String name = sample.table == null ? sample.name : sample.name + " " + sample.table;
+        out.println((first ? "" : ",") + "{\"name\": " + json(name) + ", \"cat\": " + json(sample.category) + ", \"ph\": \"X\", \"pid\": 1, \"tid\": "
+            + tid + ", \"ts\": " + micros(sample.startNanos) + ", \"dur\": " + micros(sample.getTotalNanos()) + ", \"args\": {\"mergeMicros\": "
+            + micros(sample.mergeNanos) + ", \"writeMicros\": " + micros(sample.writeNanos) + ", \"bytes\": " + sample.bytes
+            + ", \"allocatedBytes\": " + sample.allocatedBytes + "}}");
+        first = false;
+      }
+      out.println("]}");
+    } finally {
+      out.close();
+    }
+  }
+
+
+  private static PrintWriter open(File file) throws IOException {
+    return new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8")));
+  }
+
+
+  private static String json(String value) {
+    if (value == null) {
+      return "null";
+    }
+    StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        quoted.append('\\').append(c);
+      } else if (c < 0x20) {
+        quoted.append(String.format("\\u%04x", (int) c));
+      } else {
+        quoted.append(c);
+      }
+    }
+    return quoted.append('"').toString();
+  }
+
+
+  private static int compareLongs(long a, long b) {
+    return a < b ? -1 : a == b ? 0 : 1;
+  }
+
+
+  private static double ms(long nanos) {
+    return nanos / 1000000.0;
+  }
+
+
+  private static long micros(long nanos) {
+    return nanos / 1000L;
+  }
+
+}
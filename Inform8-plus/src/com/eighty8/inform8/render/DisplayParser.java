@@ -7,13 +7,13 @@
  */
 package com.eighty8.inform8.render;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import com.eighty8.inform8.db.table.Inform8Table;
 
 /* Given a context can parse a display string to work out each
- * renderable element.
+ * renderable element. The string is compiled once into a RenderPlan,
+ * shared with every other parse of it for the same table.
  */
 public class DisplayParser {
   
@@ -27,46 +27,17 @@ public class DisplayParser {
     this.display = display;
   }
   
+  /**
+   * @return the elements, unmodifiable
+   * @throws IllegalArgumentException
+   *           if the display string is malformed or refers to unknown columns
+   */
   public List<RenderElement> parse() {
-    List<RenderElement> parsedElements = new ArrayList<RenderElement>();
-    
-    String tdisplay = display;
-    while (tdisplay.length() > 0) {
-      int nextBlock = tdisplay.indexOf('{');
-      if (nextBlock == 0) {
-        // at member block now
-        tdisplay = tdisplay.substring(nextBlock+1);
-        int endBlock = tdisplay.indexOf('}');
-        String memEl = tdisplay.substring(0, endBlock);
-        if (memEl.indexOf('.') > 0) {
-          String[] parts = memEl.split("\\.");
-          parsedElements.add(new ForeignKeyMemberDisplayElement(
-              context.getColumn(parts[0]), 
-              context.getColumn(parts[0]).getChildForeignKey().getMasterTable().getColumn(parts[1])));
-        }else {
-          parsedElements.add(new TableMemberDisplayElement(context.getColumn(memEl)));
-        }
-        tdisplay = chopFrom(tdisplay, endBlock+1);
-        
-      }else if (nextBlock > 0) { //String element first
-        parsedElements.add(new StringDisplayElement(tdisplay.substring(0, nextBlock)));
-        tdisplay = chopFrom(tdisplay, nextBlock);
-        
-      }else {
-        // rest is string
-        parsedElements.add(new StringDisplayElement(tdisplay));
-        tdisplay = "";
-      }
-    }
-    return parsedElements;
+    return getPlan().getElements();
   }
 
-  public String chopFrom(String s, int idx) {
-    if (idx >= s.length()-1) {
-      return "";
-    }else {
-      return s.substring(idx);
-    }
+  public RenderPlan getPlan() {
+    return RenderPlanCache.getInstance().getPlan(context, display);
   }
   
   
@@ -0,0 +1,155 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.render;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.eighty8.inform8.db.table.Inform8Column;
+import com.eighty8.inform8.db.table.Inform8Table;
+
+/**
+ * A display string compiled against a table: the elements to render, with every member and
+ * foreign key resolved to its column. Plans are immutable and may be shared by all templates
+ * and threads.
+ *
+ * A display string is text with members in braces, {Name} for a member of the table and
+ * {CompanyId.Name} for the Name of the table the CompanyId foreign key refers to.
+ *
+ * @author ryanhenderson
+ */
+public final class RenderPlan {
+
+  private final Inform8Table table;
+
+  private final String display;
+
+  private final RenderElement[] elements;
+
+  private final List<RenderElement> elementList;
+
+
+  private RenderPlan(Inform8Table table, String display, RenderElement[] elements) {
+    this.table = table;
+    this.display = display;
+    this.elements = elements;
+    this.elementList = Collections.unmodifiableList(Arrays.asList(elements));
+  }
+
+
+  /**
+   * Compiles the display string against the table.
+   *
+   * @throws IllegalArgumentException
+   *           if a brace is not closed, a member is empty, or a member, foreign key or the
+   *           member it refers to is not found
+   */
+  public static RenderPlan compile(Inform8Table table, String display) {
+    List<RenderElement> elements = new ArrayList<RenderElement>();
+    int pos = 0;
+    while (pos < display.length()) {
+      int open = display.indexOf('{', pos);
+      if (open < 0) {
+        elements.add(new StringDisplayElement(display.substring(pos)));
+        break;
+      }
+      if (open > pos) {
+        elements.add(new StringDisplayElement(display.substring(pos, open)));
+      }
+      int close = display.indexOf('}', open + 1);
+      if (close < 0) {
+        throw error(table, display, "'{' at position " + open + " is not closed");
+      }
+      elements.add(member(table, display, display.substring(open + 1, close).trim()));
+      pos = close + 1;
+    }
+    return new RenderPlan(table, display, elements.toArray(new RenderElement[elements.size()]));
+  }
+
+
+  private static RenderElement member(Inform8Table table, String display, String member) {
+    if (member.length() == 0) {
+      throw error(table, display, "empty member {}");
+    }
+
+    int dot = member.indexOf('.');
+    if (dot < 0) {
+      return new TableMemberDisplayElement(column(table, display, member));
+    }
+
+    String fkName = member.substring(0, dot);
+    String otherName = member.substring(dot + 1);
+    if (otherName.indexOf('.') >= 0) {
+      throw error(table, display, "{" + member + "} goes through more than one foreign key");
+    }
+    Inform8Column fk = column(table, display, fkName);
+    if (fk.getChildForeignKey() == null) {
+      throw error(table, display, "{" + member + "}, " + fkName + " is not a foreign key");
+    }
+    Inform8Table master = fk.getChildForeignKey().getMasterTable();
+    Inform8Column other = master.getColumn(otherName);
+    if (other == null) {
+      throw error(table, display, "{" + member + "}, unknown column " + otherName + " in table " + master.getName());
+    }
+    return new ForeignKeyMemberDisplayElement(fk, other);
+  }
+
+
+  private static Inform8Column column(Inform8Table table, String display, String name) {
+    Inform8Column col = table.getColumn(name);
+    if (col == null) {
+      throw error(table, display, "unknown column " + name);
+    }
+    return col;
+  }
+
+
+  private static IllegalArgumentException error(Inform8Table table, String display, String message) {
+    return new IllegalArgumentException("Display string '" + display + "' of table " + table.getName() + ": " + message);
+  }
+
+
+  public Inform8Table getTable() {
+    return table;
+  }
+
+
+  public String getDisplay() {
+    return display;
+  }
+
+
+  /**
+   * @return the elements in order, unmodifiable
+   */
+  public List<RenderElement> getElements() {
+    return elementList;
+  }
+
+
+  /**
+   * @return the number of elements
+   */
+  public int size() {
+    return elements.length;
+  }
+
+
+  public RenderElement getElement(int index) {
+    return elements[index];
+  }
+
+
+  @Override
+  public String toString() {
+    return elementList.toString();
+  }
+
+}
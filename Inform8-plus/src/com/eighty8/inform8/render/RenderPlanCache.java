@@ -0,0 +1,73 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.render;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.eighty8.inform8.db.table.Inform8Table;
+
+/**
+ * The compiled render plans, by table and display string, so each display string is compiled
+ * once however many templates render it. Available to templates as $renderPlans, the Order
+ * screen renders its orderDisplay table property with:
+ *
+ * #set($renderElements=$renderPlans.getPlan($table, $display).elements)
+ *
+ * Plans hold their tables, so the cache is cleared whenever the model is loaded. Tables are
+ * matched by identity, a reloaded model never reads the plans of the one before.
+ *
+ * @author ryanhenderson
+ */
+public class RenderPlanCache {
+
+  private static final RenderPlanCache INSTANCE = new RenderPlanCache();
+
+  private final Map<Inform8Table, ConcurrentHashMap<String, RenderPlan>> plans = new IdentityHashMap<Inform8Table, ConcurrentHashMap<String, RenderPlan>>();
+
+
+  public static RenderPlanCache getInstance() {
+    return INSTANCE;
+  }
+
+
+  /**
+   * @return the plan of the display string for the table, compiled on first use
+   * @throws IllegalArgumentException
+   *           if the display string is malformed, see RenderPlan.compile
+   */
+  public RenderPlan getPlan(Inform8Table table, String display) {
+    ConcurrentHashMap<String, RenderPlan> tablePlans;
+    synchronized (plans) {
+      tablePlans = plans.get(table);
+      if (tablePlans == null) {
+        plans.put(table, tablePlans = new ConcurrentHashMap<String, RenderPlan>());
+      }
+    }
+
+    RenderPlan plan = tablePlans.get(display);
+    if (plan == null) {
+      // compiling twice on a race is harmless, the plans are equal
+      plan = RenderPlan.compile(table, display);
+      RenderPlan existing = tablePlans.putIfAbsent(display, plan);
+      if (existing != null) {
+        plan = existing;
+      }
+    }
+    return plan;
+  }
+
+
+  public void clear() {
+    synchronized (plans) {
+      plans.clear();
+    }
+  }
+
+}
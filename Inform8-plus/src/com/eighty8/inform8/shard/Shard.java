@@ -0,0 +1,98 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.shard;
+
+import com.eighty8.inform8.db.table.Inform8Table;
+
+/**
+ * One of several processes generating a model together, shard index of count.
+ *
+ * Each table belongs to exactly one shard, chosen from the hash of its name, so every process
+ * agrees on the partition without talking to the others. A shard only generates the table
+ * outputs of its own tables. Shard 0 is the coordinator, it also generates the language and
+ * general outputs.
+ *
+ * @author ryanhenderson
+ */
+public class Shard {
+
+  private final int index;
+
+  private final int count;
+
+
+  /**
+   * @param index
+   *          this shard, 0 to count - 1
+   * @param count
+   *          the number of shards
+   */
+  public Shard(int index, int count) {
+    if (count < 1 || index < 0 || index >= count) {
+      throw new IllegalArgumentException("Shard " + index + " of " + count + ": the index must be from 0 to " + (count - 1));
+    }
+    this.index = index;
+    this.count = count;
+  }
+
+
+  /**
+   * @param spec
+   *          index/count, for example 2/4
+   */
+  public static Shard parse(String spec) {
+    String[] split = spec.trim().split("/");
+    if (split.length != 2) {
+      throw new IllegalArgumentException("Shard '" + spec + "': expected index/count, for example 0/4");
+    }
+    try {
+      return new Shard(Integer.parseInt(split[0].trim()), Integer.parseInt(split[1].trim()));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Shard '" + spec + "': expected index/count, for example 0/4");
+    }
+  }
+
+
+  /**
+   * @return the shard that generates the table, the same in every process
+   */
+  public static int owner(String tableName, int count) {
+    // String.hashCode is specified, so the same on every JVM
+    return (tableName.hashCode() & 0x7fffffff) % count;
+  }
+
+
+  public boolean owns(Inform8Table table) {
+    return owner(table.getName(), count) == index;
+  }
+
+
+  /**
+   * @return true for the shard that also generates the language and general outputs
+   */
+  public boolean isCoordinator() {
+    return index == 0;
+  }
+
+
+  public int getIndex() {
+    return index;
+  }
+
+
+  public int getCount() {
+    return count;
+  }
+
+
+  @Override
+  public String toString() {
+    return index + "-of-" + count;
+  }
+
+}
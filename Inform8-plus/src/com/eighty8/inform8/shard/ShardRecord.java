@@ -0,0 +1,175 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.shard;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * What one shard generated, written to .inform8-shards/shard-index-of-count in the output
+ * folder once the shard has finished. Read back by ShardVerifier.
+ *
+ * One entry per line:
+ *
+ * <pre>
+ * model=fingerprint of the model and config the shard generated from
+ * output=size path          a table output of this shard, path relative to the output folder
+ * expected=path             the coordinator lists every table output of every shard
+ * </pre>
+ *
+ * @author ryanhenderson
+ */
+public class ShardRecord {
+
+  public static final String FOLDER_NAME = ".inform8-shards";
+
+  private final File outDir;
+
+  private final File recordFile;
+
+  private String model;
+
+  /** path to size */
+  private final Map<String, Long> outputs = new LinkedHashMap<String, Long>();
+
+  private final TreeSet<String> expected = new TreeSet<String>();
+
+
+  /**
+   * @param outDir
+   *          the generation output folder
+   */
+  public ShardRecord(File outDir, Shard shard) {
+    this.outDir = outDir;
+    this.recordFile = recordFile(outDir, shard.getIndex(), shard.getCount());
+  }
+
+
+  static File recordFile(File outDir, int index, int count) {
+    return new File(new File(outDir, FOLDER_NAME), "shard-" + index + "-of-" + count);
+  }
+
+
+  /**
+   * Removes the record of a previous run, so the shard counts as unfinished until saved.
+   */
+  public void clear() {
+    if (recordFile.exists() && !recordFile.delete()) {
+      throw new IllegalStateException("Unable to remove the shard record " + recordFile);
+    }
+  }
+
+
+  public void setModel(String model) {
+    this.model = model;
+  }
+
+
+  /**
+   * Records an output generated by this shard, with its current size.
+   */
+  public void addOutput(File output) {
+    outputs.put(path(outDir, output), output.length());
+  }
+
+
+  /**
+   * Records an output that one of the shards must generate.
+   */
+  public void addExpected(File output) {
+    expected.add(path(outDir, output));
+  }
+
+
+  public String getModel() {
+    return model;
+  }
+
+
+  /**
+   * @return the outputs, path relative to the output folder to size
+   */
+  public Map<String, Long> getOutputs() {
+    return outputs;
+  }
+
+
+  public TreeSet<String> getExpected() {
+    return expected;
+  }
+
+
+  public void save() throws IOException {
+    recordFile.getParentFile().mkdirs();
+    // written aside and renamed, a record is never seen half written
+    File temp = new File(recordFile.getParentFile(), recordFile.getName() + ".tmp");
+    BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"));
+    try {
+      out.write("model=" + model + "\n");
+      for (Map.Entry<String, Long> output : outputs.entrySet()) {
+        out.write("output=" + output.getValue() + " " + output.getKey() + "\n");
+      }
+      for (String path : expected) {
+        out.write("expected=" + path + "\n");
+      }
+    } finally {
+      out.close();
+    }
+    if (!temp.renameTo(recordFile)) {
+      throw new IOException("Unable to write the shard record " + recordFile);
+    }
+  }
+
+
+  /**
+   * @return the record of the shard, null if it has not finished
+   */
+  static ShardRecord load(File outDir, int index, int count) throws IOException {
+    ShardRecord record = new ShardRecord(outDir, new Shard(index, count));
+    if (!record.recordFile.exists()) {
+      return null;
+    }
+    BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(record.recordFile), "UTF-8"));
+    try {
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.startsWith("model=")) {
+          record.model = line.substring(6);
+        } else if (line.startsWith("output=")) {
+          int split = line.indexOf(' ');
+          record.outputs.put(line.substring(split + 1), Long.valueOf(line.substring(7, split)));
+        } else if (line.startsWith("expected=")) {
+          record.expected.add(line.substring(9));
+        }
+      }
+    } finally {
+      in.close();
+    }
+    return record;
+  }
+
+
+  static String path(File outDir, File output) {
+    String base = outDir.getAbsolutePath();
+    String path = output.getAbsolutePath();
+    if (path.startsWith(base + File.separator)) {
+      path = path.substring(base.length() + 1);
+    }
+    return path.replace(File.separatorChar, '/');
+  }
+
+}
@@ -0,0 +1,143 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.shard;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Checks the output of a sharded generation is complete once every shard has finished: every
+ * shard saved its record, all generated from the same model and config, and every table output
+ * the coordinator expects was written by exactly one shard and is still as it was written.
+ *
+ * @author ryanhenderson
+ */
+public class ShardVerifier {
+
+  static Logger LOG = Logger.getLogger(ShardVerifier.class);
+
+  /** the most problems of one kind listed */
+  private static final int LISTED = 20;
+
+  private final File outDir;
+
+  private final int count;
+
+
+  /**
+   * @param outDir
+   *          the generation output folder shared by the shards
+   * @param count
+   *          the number of shards
+   */
+  public ShardVerifier(File outDir, int count) {
+    this.outDir = outDir;
+    this.count = count;
+  }
+
+
+  /**
+   * @return the problems found, empty if the output is complete
+   */
+  public List<String> verify() throws IOException {
+    List<String> problems = new ArrayList<String>();
+
+    ShardRecord[] records = new ShardRecord[count];
+    for (int i = 0; i < count; i++) {
+      records[i] = ShardRecord.load(outDir, i, count);
+      if (records[i] == null) {
+        problems.add("Shard " + i + " of " + count + " has not finished, no " + ShardRecord.recordFile(outDir, i, count));
+      }
+    }
+    if (records[0] == null) {
+      return problems;
+    }
+
+    String model = records[0].getModel();
+    Map<String, Integer> writers = new HashMap<String, Integer>();
+    List<String> changed = new ArrayList<String>();
+    List<String> twice = new ArrayList<String>();
+    for (int i = 0; i < count; i++) {
+      if (records[i] == null) {
+        continue;
+      }
+      if (!model.equals(records[i].getModel())) {
+        problems.add("Shard " + i + " generated from a different model or config than shard 0");
+      }
+      for (Map.Entry<String, Long> output : records[i].getOutputs().entrySet()) {
+        Integer other = writers.put(output.getKey(), i);
+        if (other != null) {
+          twice.add(output.getKey() + " by shards " + other + " and " + i);
+        }
+        File file = new File(outDir, output.getKey());
+        if (!file.isFile()) {
+          changed.add(output.getKey() + " of shard " + i + " is missing");
+        } else if (file.length() != output.getValue()) {
+          changed.add(output.getKey() + " of shard " + i + " is " + file.length() + " bytes, " + output.getValue() + " when written");
+        }
+      }
+    }
+
+    List<String> missing = new ArrayList<String>();
+    for (String path : records[0].getExpected()) {
+      if (!writers.containsKey(path)) {
+        missing.add(path);
+      }
+    }
+    List<String> unexpected = new ArrayList<String>();
+    for (String path : writers.keySet()) {
+      if (!records[0].getExpected().contains(path)) {
+        unexpected.add(path);
+      }
+    }
+
+    list("Not generated by any shard", missing, problems);
+    list("Generated twice", twice, problems);
+    list("Changed since generated", changed, problems);
+    list("Not expected by the coordinator", unexpected, problems);
+    return problems;
+  }
+
+
+  private static void list(String problem, List<String> found, List<String> problems) {
+    for (int i = 0; i < Math.min(LISTED, found.size()); i++) {
+      problems.add(problem + ": " + found.get(i));
+    }
+    if (found.size() > LISTED) {
+      problems.add(problem + ": " + (found.size() - LISTED) + " more");
+    }
+  }
+
+
+  /**
+   * Verifies and logs the result.
+   *
+   * @throws IllegalStateException
+   *           listing the problems, if the output is not complete
+   */
+  public void check() throws IOException {
+    List<String> problems = verify();
+    if (!problems.isEmpty()) {
+      StringBuilder message = new StringBuilder("The output of the " + count + " shards in " + outDir + " is not complete:");
+      for (String problem : problems) {
+        message.append("\n  ").append(problem);
+        LOG.error(problem);
+      }
+      throw new IllegalStateException(message.toString());
+    }
+    ShardRecord coordinator = ShardRecord.load(outDir, 0, count);
+    LOG.info("Output of " + count + " shards complete, " + coordinator.getExpected().size() + " table outputs");
+  }
+
+}
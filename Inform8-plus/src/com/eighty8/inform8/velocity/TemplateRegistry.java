@@ -0,0 +1,150 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.velocity;
+
+import java.io.Writer;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+
+/**
+ * A single Velocity engine shared by all generators, holding each template once it has been
+ * parsed. Templates are parsed on first use and reused by every later merge, from any thread.
+ *
+ * Velocity's parsed templates can not be serialised, so templates are parsed once per run rather
+ * than cached on disk between runs. A long running process picks up edited templates with
+ * reload().
+ *
+ * @author ryanhenderson
+ */
+public class TemplateRegistry {
+
+  static Logger LOG = Logger.getLogger(TemplateRegistry.class);
+
+  private final Properties properties;
+
+  /** The templating engine */
+  private VelocityEngine velocityEngine;
+
+  /** Parsed templates by name */
+  private final Map<String, Template> templates = new ConcurrentHashMap<String, Template>();
+
+  private long startupNanos;
+
+  private long parseNanos;
+
+  private final AtomicInteger lookups = new AtomicInteger();
+
+
+  /**
+   * Creates and initialises the engine.
+   *
+   * @param properties
+   *          the velocity properties, normally all the generation config properties
+   * @throws Exception
+   *           if the engine fails to initialise
+   */
+  public TemplateRegistry(Properties properties) throws Exception {
+    this.properties = properties;
+    init();
+  }
+
+
+  private void init() throws Exception {
+    long start = System.nanoTime();
+    velocityEngine = new VelocityEngine(properties);
+    velocityEngine.setProperty(VelocityEngine.RUNTIME_LOG_LOGSYSTEM, new DummyLogger());
+    velocityEngine.init();
+    startupNanos = System.nanoTime() - start;
+    LOG.trace("Velocity Loaded");
+  }
+
+
+  /**
+   * Drops every parsed template and restarts the engine, clearing Velocity's own resource cache,
+   * so templates edited on disk are parsed again on next use. Must not be called while merges are
+   * running.
+   */
+  public synchronized void reload() throws Exception {
+    templates.clear();
+    parseNanos = 0;
+    lookups.set(0);
+    init();
+  }
+
+
+  /**
+   * @param name
+   *          the template name, relative to the template folders
+   * @return the parsed template
+   * @throws Exception
+   *           if the template can not be found or parsed
+   */
+  public Template getTemplate(String name) throws Exception {
+    lookups.incrementAndGet();
+    Template template = templates.get(name);
+    if (template == null) {
+      synchronized (this) {
+        template = templates.get(name);
+        if (template == null) {
+          long start = System.nanoTime();
+          template = velocityEngine.getTemplate(name);
+          parseNanos += System.nanoTime() - start;
+          templates.put(name, template);
+        }
+      }
+    }
+    return template;
+  }
+
+
+  /**
+   * Merges the named template with the data.
+   *
+   * @param name
+   *          the template name
+   * @param data
+   *          the objects made available to the template
+   * @param writer
+   *          receives the merged output
+   */
+  public void merge(String name, Map<String, Object> data, Writer writer) throws Exception {
+    getTemplate(name).merge(new VelocityContext(data), writer);
+  }
+
+
+  /**
+   * Logs engine startup time, the number of templates parsed and the time spent parsing them.
+   */
+  public synchronized void logMetrics() {
+    LOG.info("Templates: engine started in " + (startupNanos / 1000000L) + "ms, " + templates.size() + " templates parsed in "
+        + (parseNanos / 1000000L) + "ms, " + lookups.get() + " lookups");
+  }
+
+
+  public synchronized long getStartupNanos() {
+    return startupNanos;
+  }
+
+
+  public synchronized long getParseNanos() {
+    return parseNanos;
+  }
+
+
+  public int getParsedCount() {
+    return templates.size();
+  }
+
+}
@@ -0,0 +1,162 @@
+/* Copyright 2011 - 88 Creative Pty Ltd. 
+ * Copyright of this program is the property of 88 Creative, 
+ * without whose written permission reproduction in
+ * whole or in part is prohibited. All rights reserved.
+ * http://www.inform8.com
+ * http://www.88creative.com.au
+ */
+package com.eighty8.inform8.watch;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Watches files and folders for changes by polling their modified time and size.
+ *
+ * Changes are debounced: once a change is seen the watcher keeps polling until nothing has
+ * changed for the quiet period, so a burst of saves is reported as a single set of changes.
+ *
+ * @author ryanhenderson
+ */
+public class FileWatcher {
+
+  static Logger LOG = Logger.getLogger(FileWatcher.class);
+
+  private final List<File> roots;
+
+  private final long pollMillis;
+
+  private final long quietMillis;
+
+  private final FileFilter filter;
+
+  private Map<File, Stamp> snapshot;
+
+
+  /**
+   * @param roots
+   *          the files and folders to watch, folders are watched recursively
+   * @param pollMillis
+   *          how often to check for changes
+   * @param quietMillis
+   *          how long nothing must change before changes are reported
+   * @param filter
+   *          the files to watch within the folders, null for all
+   */
+  public FileWatcher(List<File> roots, long pollMillis, long quietMillis, FileFilter filter) {
+    this.roots = new ArrayList<File>(roots);
+    this.pollMillis = pollMillis;
+    this.quietMillis = quietMillis;
+    this.filter = filter;
+    this.snapshot = scan();
+  }
+
+
+  /**
+   * Blocks until files change and then stay unchanged for the quiet period.
+   *
+   * @return the files added, modified or deleted, sorted by path
+   * @throws InterruptedException
+   *           if the thread is interrupted while waiting
+   */
+  public List<File> awaitChanges() throws InterruptedException {
+    Set<File> changed = new TreeSet<File>();
+    long lastChange = 0;
+    while (true) {
+      Thread.sleep(pollMillis);
+      Map<File, Stamp> current = scan();
+      Set<File> diff = diff(snapshot, current);
+      snapshot = current;
+      if (!diff.isEmpty()) {
+        changed.addAll(diff);
+        lastChange = System.currentTimeMillis();
+        LOG.trace("Changed: " + diff);
+      } else if (!changed.isEmpty() && System.currentTimeMillis() - lastChange >= quietMillis) {
+        return new ArrayList<File>(changed);
+      }
+    }
+  }
+
+
+  public List<File> getRoots() {
+    return roots;
+  }
+
+
+  private Map<File, Stamp> scan() {
+    Map<File, Stamp> stamps = new HashMap<File, Stamp>();
+    for (File root : roots) {
+      scan(root, stamps);
+    }
+    return stamps;
+  }
+
+
+  private void scan(File file, Map<File, Stamp> stamps) {
+    if (file.isDirectory()) {
+      File[] children = file.listFiles();
+      if (children != null) {
+        for (File child : children) {
+          scan(child, stamps);
+        }
+      }
+    } else if (file.isFile() && (filter == null || filter.accept(file))) {
+      stamps.put(file, new Stamp(file.lastModified(), file.length()));
+    }
+  }
+
+
+  private static Set<File> diff(Map<File, Stamp> before, Map<File, Stamp> after) {
+    Set<File> changed = new HashSet<File>();
+    for (Map.Entry<File, Stamp> entry : after.entrySet()) {
+      if (!entry.getValue().equals(before.get(entry.getKey()))) {
+        changed.add(entry.getKey());
+      }
+    }
+    for (File file : before.keySet()) {
+      if (!after.containsKey(file)) {
+        changed.add(file);
+      }
+    }
+    return changed;
+  }
+
+
+  private static class Stamp {
+
+    final long modified;
+    final long length;
+
+
+    Stamp(long modified, long length) {
+      this.modified = modified;
+      this.length = length;
+    }
+
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Stamp)) {
+        return false;
+      }
+      Stamp other = (Stamp) obj;
+      return modified == other.modified && length == other.length;
+    }
+
+
+    @Override
+    public int hashCode() {
+      return (int) (modified ^ (modified >>> 32)) * 31 + (int) length;
+    }
+  }
+
+}